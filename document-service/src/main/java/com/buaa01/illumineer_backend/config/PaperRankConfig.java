@@ -0,0 +1,47 @@
+package com.buaa01.illumineer_backend.config;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.stereotype.Component;
+
+/**
+ * 综合评分（sortType=4）的权重配置，ES 评分脚本和 PaperSortScorer 共用，
+ * 配置中心修改后刷新生效，不需要重启服务
+ */
+@Getter
+@Component
+@RefreshScope
+public class PaperRankConfig {
+    /** 引用次数权重 */
+    @Value("${search.rank.ref-weight:0.3}")
+    private double refWeight;
+
+    /** 收藏次数权重 */
+    @Value("${search.rank.fav-weight:0.2}")
+    private double favWeight;
+
+    /** 出版时间权重 */
+    @Value("${search.rank.time-weight:0.1}")
+    private double timeWeight;
+
+    /** 文本相关度权重：ES 中是 BM25，PaperSortScorer 中是关键词匹配度 */
+    @Value("${search.rank.text-weight:0.4}")
+    private double textWeight;
+
+    /** 引用次数归一化的分母 */
+    @Value("${search.rank.ref-scale:1000}")
+    private double refScale;
+
+    /** 收藏次数归一化的分母 */
+    @Value("${search.rank.fav-scale:10000}")
+    private double favScale;
+
+    /** 出版时间的年衰减系数 */
+    @Value("${search.rank.time-decay:0.1}")
+    private double timeDecay;
+
+    /** BM25 分数饱和系数：_score / (_score + k)，把无上界的分数压到 [0,1) */
+    @Value("${search.rank.text-saturation:10}")
+    private double textSaturation;
+}
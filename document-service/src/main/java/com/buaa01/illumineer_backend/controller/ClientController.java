@@ -10,6 +10,8 @@ import com.buaa01.illumineer_backend.service.CategoryService;
 import com.buaa01.illumineer_backend.service.paper.PaperAdoptionService;
 import com.buaa01.illumineer_backend.service.paper.PaperSearchService;
 import com.buaa01.illumineer_backend.service.paper.PaperService;
+import com.buaa01.illumineer_backend.tool.PaperDetailCache;
+import com.buaa01.illumineer_backend.utils.PaperCodec;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -45,11 +47,15 @@ public class ClientController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private PaperDetailCache paperDetailCache;
+
     @GetMapping("/paper")
     @SentinelResource(value = "getPaperById",blockHandler = "getPaperByIdHandler")
     public Map<String, Object> getPaperById(@RequestParam("pid") Long pid) {
-        Map<String, Object> paper = paperMapper.getPaperByPid(pid);
-        return paper;
+        // 经过详情缓存，返回格式与 select * 一致
+        Paper paper = paperDetailCache.get(pid);
+        return paper == null ? null : PaperCodec.toRow(paper);
     }
     public List<PaperAdo> getPaperByIdHandler(@RequestParam("pids") String pids, @RequestParam("name")String name) {
         return null;
@@ -25,6 +25,7 @@ public class PaperFilterController {
      * ES模糊搜索结果的进一步筛选
      * 模糊->限定
      *
+     * @param sessionId   检索接口返回的会话id
      * @param Map<String, ArrayList<String>> 筛选条件
      * @param size        一页的条数
      * @param offset      第几页
@@ -35,7 +36,8 @@ public class PaperFilterController {
      */
 
     @PostMapping("/get/filter")
-    public CustomResponse ResultFilter(@RequestParam("size") Integer size,
+    public CustomResponse ResultFilter(@RequestParam("sessionId") String sessionId,
+            @RequestParam("size") Integer size,
             @RequestParam("offset") Integer offset,
             @RequestParam("sortType") Integer sortType,
             @RequestParam("order") Integer order,
@@ -43,7 +45,12 @@ public class PaperFilterController {
         CustomResponse customResponse = new CustomResponse();
 
         try {
-            Map<String, Object> resultPapers = filterService.filterSearchResult(filtercondition, size, offset, sortType, order);
+            Map<String, Object> resultPapers = filterService.filterSearchResult(sessionId, filtercondition, size, offset, sortType, order);
+            if (resultPapers == null) {
+                customResponse.setCode(404);
+                customResponse.setMessage("检索会话已过期，请重新检索！");
+                return customResponse;
+            }
             customResponse.setData(resultPapers);
             return customResponse;
         } catch (Exception e) {
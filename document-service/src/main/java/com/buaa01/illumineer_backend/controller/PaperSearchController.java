@@ -68,8 +68,10 @@ public class PaperSearchController {
      * @param keyword 搜索内容
      * @param size 一页多少条内容
      * @param offset 第几页
-     * @param sortType 根据什么进行排序：1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数
+     * @param sortType 根据什么进行排序：1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数，4=综合评分
      * @param order 0=降序，1=升序
+     * @param searchAfter 上一页返回的 cursor（可选），传入时按游标翻页
+     * @param sessionId 检索会话id（可选），为空时新建，筛选接口使用返回的 sessionId
      * @return SearchResultPaper
      */
     @GetMapping("/get/keyword")
@@ -78,9 +80,11 @@ public class PaperSearchController {
                                        @RequestParam("size") Integer size,
                                        @RequestParam("offset") Integer offset,
                                        @RequestParam("sortType") Integer sortType,
-                                       @RequestParam("order") Integer order) {
+                                       @RequestParam("order") Integer order,
+                                       @RequestParam(value = "searchAfter", required = false) List<String> searchAfter,
+                                       @RequestParam(value = "sessionId", required = false) String sessionId) {
         try {
-            return paperSearchService.searchPapers(condition, keyword, size, offset, sortType, order);
+            return paperSearchService.searchPapers(condition, keyword, size, offset, sortType, order, searchAfter, sessionId);
         } catch (Exception e) {
             e.printStackTrace();
             CustomResponse customResponse = new CustomResponse();
@@ -97,8 +101,10 @@ public class PaperSearchController {
      * @param keyword（传 name 或者 %name%）
      * @param size 一页多少条内容
      * @param offset 第几页
-     * @param sortType 根据什么进行排序：1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数
+     * @param sortType 根据什么进行排序：1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数，4=综合评分
      * @param order 0=降序，1=升序
+     * @param searchAfter 上一页返回的 cursor（可选），传入时按游标翻页
+     * @param sessionId 检索会话id（可选），为空时新建，筛选接口使用返回的 sessionId
      * @return SearchResultPaper
      */
     @GetMapping("get/advanced")
@@ -108,9 +114,11 @@ public class PaperSearchController {
                                                @RequestParam("size") Integer size,
                                                @RequestParam("offset") Integer offset,
                                                @RequestParam("sortType") Integer sortType,
-                                               @RequestParam("order") Integer order) {
+                                               @RequestParam("order") Integer order,
+                                               @RequestParam(value = "searchAfter", required = false) List<String> searchAfter,
+                                               @RequestParam(value = "sessionId", required = false) String sessionId) {
         try {
-            return paperSearchService.advancedSearchPapers(logic, condition, keyword, size, offset, sortType, order);
+            return paperSearchService.advancedSearchPapers(logic, condition, keyword, size, offset, sortType, order, searchAfter, sessionId);
         } catch (Exception e) {
             e.printStackTrace();
             CustomResponse customResponse = new CustomResponse();
@@ -2,36 +2,81 @@ package com.buaa01.illumineer_backend.controller;
 
 import com.buaa01.illumineer_backend.entity.CustomResponse;
 import com.buaa01.illumineer_backend.service.StormService;
+import com.buaa01.illumineer_backend.service.impl.user.UserDetailsImpl;
+import com.buaa01.illumineer_backend.tool.StormBulkLoader;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 import java.util.concurrent.CompletableFuture;
 
+@Slf4j
 @RestController
 public class StormController {
     @Autowired
     private StormService stormService;
+    @Autowired
+    private StormBulkLoader stormBulkLoader;
 
     @PostMapping("/admin/updatePaper")
     public CustomResponse updatePaper() throws URISyntaxException, IOException, ParserConfigurationException, SAXException {
+        if (!isAdmin()) {
+            return new CustomResponse(403, "您不是管理员，无权访问", null);
+        }
         CompletableFuture<String> future = stormService.getStorm();
         future.whenComplete((result, exception) -> {
             if (exception != null) {
                 // 异常处理
-                System.out.println("Exception: " + exception.getMessage());
-                // 这里可以返回一个失败的响应或者做其他处理
+                log.error("OpenAlex 增量导入出错：{}", exception.getMessage());
             } else {
                 // 异常完成后的处理
-                System.out.println("Task completed successfully with result: " + result);
-                // 如果你需要返回结果，可以通过其他方式返回
+                log.info("OpenAlex 增量导入完成，新增 {} 篇", result);
             }
         });
         // 这里会立即返回响应，而不等待异步任务完成
         return new CustomResponse(200, "OK", "Processing...");
     }
+
+    /**
+     * 从本地 OpenAlex 快照目录批量导入，用于新环境的初始化，仅管理员可用
+     * @param dir 快照目录，相对于配置的 storm.bulk.base-dir
+     */
+    @PostMapping("/admin/bulkLoad")
+    public CustomResponse bulkLoad(@RequestParam("dir") String dir) {
+        if (!isAdmin()) {
+            return new CustomResponse(403, "您不是管理员，无权访问", null);
+        }
+        Path root = stormBulkLoader.resolveDir(dir);
+        if (root == null) {
+            return new CustomResponse(400, "快照目录不存在或不在允许的目录下", null);
+        }
+        CompletableFuture<String> future = stormService.bulkLoad(root.toString());
+        future.whenComplete((result, exception) -> {
+            if (exception != null) {
+                log.error("批量导入 {} 出错：{}", root, exception.getMessage());
+            } else {
+                log.info("批量导入 {} 完成，新增 {} 篇", root, result);
+            }
+        });
+        return new CustomResponse(200, "OK", "Processing...");
+    }
+
+    // 当前登录用户是否为管理员（status 为 0）
+    private boolean isAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
+            return false;
+        }
+        Integer status = ((UserDetailsImpl) authentication.getPrincipal()).getUser().getStatus();
+        return status != null && status == 0;
+    }
 }
@@ -39,6 +39,16 @@ CREATE TABLE `paper` (
                          KEY `idx_author` (`auths`)
 ) ENGINE=InnoDB AUTO_INCREMENT=1 DEFAULT CHARSET=utf8mb4 COMMENT='文章表';
 
+DROP TABLE IF EXISTS `paper_outbox`;
+
+CREATE TABLE `paper_outbox` (
+                         `id` BIGINT(20) NOT NULL AUTO_INCREMENT COMMENT '变更序号',
+                         `pid` BIGINT(20) NOT NULL COMMENT '文章ID',
+                         `changed_columns` VARCHAR(255) DEFAULT NULL COMMENT '变更的列（逗号分隔），为空表示整行变更',
+                         `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '变更时间',
+                         PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文章变更发件箱，与文章修改在同一事务中写入，由后台任务同步到ES后删除';
+
 DROP TABLE IF EXISTS `patents`;
 
 CREATE TABLE `patents` (
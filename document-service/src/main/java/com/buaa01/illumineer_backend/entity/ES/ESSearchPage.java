@@ -0,0 +1,23 @@
+package com.buaa01.illumineer_backend.entity.ES;
+
+import com.buaa01.illumineer_backend.entity.SearchResultPaper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ESSearchPage {
+    /** 当前页的论文，已按排序结果排列，只包含pid以及筛选、排序用到的字段 */
+    private List<SearchResultPaper> papers;
+    /** 命中总数 */
+    private Long total;
+    /** 当前页最后一条的排序值，作为下一页的 search_after 游标 */
+    private List<String> cursor;
+    /** 筛选项：年份、来源、类型、主题，由聚合统计整个命中集合 */
+    private Map<String, Map<String, Integer>> options;
+}
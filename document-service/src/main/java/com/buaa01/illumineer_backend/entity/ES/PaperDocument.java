@@ -0,0 +1,90 @@
+package com.buaa01.illumineer_backend.entity.ES;
+
+import com.buaa01.illumineer_backend.entity.Paper;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 论文在 ES 索引中的文档，写入和读取都使用这个类，字段和 PaperIndexTool.paperMapping() 一致。
+ * 作者按名字检索，名字单独存在 authNames 中；auths 原样保存，不建索引
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaperDocument {
+    private Long pid;
+    /** 文章题目 */
+    private String title;
+    /** 文章主题 */
+    private String theme;
+    /** 内容摘要 */
+    private String essAbs;
+    /** 关键词；旧文档中是一个字符串，按单元素列表读取 */
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private List<String> keywords;
+    /** 文章作者 */
+    private Map<String, Integer> auths;
+    /** 作者名，用于检索 */
+    private List<String> authNames;
+    /** 文章来源 */
+    private String derivation;
+    /** 文章类型 */
+    private String type;
+    /** 发布时间 */
+    private Date publishDate;
+    /** 相关领域 */
+    private String category;
+    /** 被引用次数 */
+    private Integer refTimes;
+    /** 收藏次数 */
+    private Integer favTimes;
+    /** 文章链接 */
+    private String contentUrl;
+    /** 状态: 0 正常 1 已删除 2 审核中 */
+    private Integer stats;
+
+    public static PaperDocument of(Paper paper, Date publishDate) {
+        return new PaperDocument(
+                paper.getPid(),
+                paper.getTitle(),
+                paper.getTheme(),
+                paper.getEssAbs(),
+                paper.getKeywords(),
+                paper.getAuths(),
+                paper.getAuths() == null ? null : new ArrayList<>(paper.getAuths().keySet()),
+                paper.getDerivation(),
+                paper.getType(),
+                publishDate,
+                paper.getCategory(),
+                paper.getRefTimes(),
+                paper.getFavTimes(),
+                paper.getContentUrl(),
+                paper.getStats());
+    }
+
+    public Paper toPaper() {
+        Paper paper = new Paper();
+        paper.setPid(pid);
+        paper.setTitle(title);
+        paper.setTheme(theme);
+        paper.setEssAbs(essAbs);
+        paper.setKeywords(keywords);
+        paper.setAuths(auths);
+        paper.setDerivation(derivation);
+        paper.setType(type);
+        paper.setPublishDate(publishDate);
+        paper.setCategory(category);
+        paper.setRefTimes(refTimes);
+        paper.setFavTimes(favTimes);
+        paper.setContentUrl(contentUrl);
+        paper.setStats(stats);
+        return paper;
+    }
+}
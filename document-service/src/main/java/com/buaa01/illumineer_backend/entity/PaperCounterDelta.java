@@ -0,0 +1,19 @@
+package com.buaa01.illumineer_backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一篇文章尚未写入数据库的引用、收藏增量
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaperCounterDelta {
+    private Long pid;
+    /** 引用次数增量 */
+    private long refTimes;
+    /** 收藏次数增量 */
+    private long favTimes;
+}
@@ -0,0 +1,20 @@
+package com.buaa01.illumineer_backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * paper 表的一条变更记录，与变更在同一事务中写入，同步到 ES 后删除
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaperOutbox {
+    /** 变更序号 */
+    private Long id;
+    /** 文章ID */
+    private Long pid;
+    /** 变更的列，逗号分隔，为空表示整行变更（新增、修改多个字段） */
+    private String changedColumns;
+}
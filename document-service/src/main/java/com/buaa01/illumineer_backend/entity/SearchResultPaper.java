@@ -1,7 +1,7 @@
 package com.buaa01.illumineer_backend.entity;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.buaa01.illumineer_backend.utils.PaperCodec;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -37,6 +37,16 @@ public class SearchResultPaper {
     private Integer favTime;
     /** 文章链接 */
      private String contentUrl;
+    /** 综合评分，按综合评分排序时由ES返回，其余情况为空 */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double score;
+
+    public SearchResultPaper(Long pid, String title, String keywords, String auths, String category, String type,
+                             String theme, Date publishDate, String derivation, Integer refTimes, Integer favTime,
+                             String contentUrl) {
+        this(pid, title, keywords, auths, category, type, theme, publishDate, derivation, refTimes, favTime,
+                contentUrl, null);
+    }
 
     // ————————以下字段不需要缓存—————————————
     /** 内容摘要 */
@@ -46,31 +56,19 @@ public class SearchResultPaper {
     /** 状态: 0 正常 1 已删除 2 审核中 */
     // private Integer stats;
 
+    /**
+     * 只保留pid以及筛选、排序用到的字段，用于检索会话等需要保存整个结果集的地方
+     */
+    public SearchResultPaper toDigest() {
+        return new SearchResultPaper(pid, null, keywords, null, null, type, theme, publishDate, derivation,
+                refTimes, favTime, null, score);
+    }
+
     public List<String> getKeywords() {
-        ObjectMapper objectMapper = new ObjectMapper();
-        List<String> keywords = null;
-        try {
-            if (!this.keywords.isEmpty()) {
-                keywords = objectMapper.readValue(this.keywords, new TypeReference<List<String>>() {
-                });
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return keywords;
+        return PaperCodec.parseKeywords(this.keywords);
     }
 
     public Map<String, Integer> getAuths() {
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, Integer> auths = null;
-        try {
-            if (!this.auths.isEmpty()) {
-                auths = objectMapper.readValue(this.auths, new TypeReference<Map<String, Integer>>() {
-                });
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return auths;
+        return PaperCodec.parseAuths(this.auths);
     }
 }
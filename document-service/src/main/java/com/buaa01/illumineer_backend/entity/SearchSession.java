@@ -0,0 +1,29 @@
+package com.buaa01.illumineer_backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 检索会话：之后的筛选、排序、翻页都基于它。
+ * papers 最多保存 search.cache.window 条，命中总数更多时筛选按保存的检索条件交给 ES
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchSession {
+    /** 检索结果，只包含pid以及筛选、排序用到的字段 */
+    private List<SearchResultPaper> papers;
+    /** 命中总数 */
+    private Long total;
+    /** 检索类型：keyword 一框式检索，advanced 高级检索；MySQL 回退得到的会话为空 */
+    private String searchType;
+    /** 检索参数，一框式检索为 [condition, keyword]，高级检索为 [logic_str, condition_str, keyword_str] */
+    private List<String> searchParams;
+    /** 检索时的排序依据 */
+    private Integer sortType;
+    /** 检索时的排序方式 */
+    private Integer order;
+}
@@ -0,0 +1,24 @@
+package com.buaa01.illumineer_backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * OpenAlex 导入中一个 part 文件的进度
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StormPartCheckpoint {
+    /** 文件名，如 part_000.gz */
+    private String name;
+    /** 文件的 ETag，文件变化后进度作废 */
+    private String etag;
+    /** 已下载的字节数 */
+    private Long bytes;
+    /** 已提交的行数：这些行都已写入数据库或确认跳过 */
+    private Long lines;
+    /** 是否已全部完成 */
+    private Boolean done;
+}
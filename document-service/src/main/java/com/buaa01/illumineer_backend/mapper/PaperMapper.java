@@ -2,46 +2,154 @@ package com.buaa01.illumineer_backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.buaa01.illumineer_backend.entity.Paper;
+import com.buaa01.illumineer_backend.entity.PaperAdo;
+import com.buaa01.illumineer_backend.entity.PaperCounterDelta;
+import com.buaa01.illumineer_backend.entity.SearchResultPaper;
+import com.buaa01.illumineer_backend.handler.LongListTypeHandler;
+import com.buaa01.illumineer_backend.handler.MapTypeHandler;
+import com.buaa01.illumineer_backend.handler.StringListTypeHandler;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.ResultMap;
+import org.apache.ibatis.annotations.Results;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
 @Mapper
 public interface PaperMapper extends BaseMapper<Paper> {
+    /** 检索结果列表（卡片）用到的列，不含 ess_abs 和 refs */
+    String CARD_COLUMNS = "pid, title, keywords, auths, category, type, theme, publish_date, derivation, "
+            + "ref_times, fav_times, content_url";
+    /** 认领条目用到的列 */
+    String ADOPTION_COLUMNS = "pid, title, auths, publish_date, stats";
+    /** 详情页用到的列 */
+    String DETAIL_COLUMNS = "pid, title, theme, ess_abs, keywords, auths, derivation, type, publish_date, category, "
+            + "fav_times, ref_times, refs, content_url, stats";
+    /** ES 文档用到的列，即详情页的列去掉 refs */
+    String INDEX_COLUMNS = "pid, title, theme, ess_abs, keywords, auths, derivation, type, publish_date, category, "
+            + "fav_times, ref_times, content_url, stats";
 
     // 获取指定文献ID的详细信息
     @Select("select * from paper where pid = #{pid} and stats = 0")
     Map<String, Object> getPaperByPid(Long pid);
 
-    // 获取指定文献ID的详细信息
-    @Select("select * from paper where stats = #{stats}")
-    List<Map<String, Object>> getPapersByStats(int stats);
+    // 详情页：JSON 列由类型处理器直接解析
+    @Select("select " + DETAIL_COLUMNS + " from paper where pid = #{pid} and stats = 0")
+    @Results(id = "paperDetail", value = {
+            @Result(column = "pid", property = "pid", id = true),
+            @Result(column = "title", property = "title"),
+            @Result(column = "theme", property = "theme"),
+            @Result(column = "ess_abs", property = "essAbs"),
+            @Result(column = "keywords", property = "keywords", typeHandler = StringListTypeHandler.class),
+            @Result(column = "auths", property = "auths", typeHandler = MapTypeHandler.class),
+            @Result(column = "derivation", property = "derivation"),
+            @Result(column = "type", property = "type"),
+            @Result(column = "publish_date", property = "publishDate"),
+            @Result(column = "category", property = "category"),
+            @Result(column = "fav_times", property = "favTimes"),
+            @Result(column = "ref_times", property = "refTimes"),
+            @Result(column = "refs", property = "refs", typeHandler = LongListTypeHandler.class),
+            @Result(column = "content_url", property = "contentUrl"),
+            @Result(column = "stats", property = "stats")
+    })
+    Paper getPaperDetailByPid(Long pid);
+
+    // 批量获取检索结果卡片，keywords、auths 保持数据库中的 JSON 字符串，顺序由调用方恢复
+    @Select("<script>select " + CARD_COLUMNS + " from paper where stats = 0 and pid in " +
+            "<foreach collection='pids' item='pid' open='(' separator=',' close=')'>#{pid}</foreach>" +
+            "</script>")
+    @Results(id = "paperCard", value = {
+            @Result(column = "pid", property = "pid", id = true),
+            @Result(column = "title", property = "title"),
+            @Result(column = "keywords", property = "keywords"),
+            @Result(column = "auths", property = "auths"),
+            @Result(column = "category", property = "category"),
+            @Result(column = "type", property = "type"),
+            @Result(column = "theme", property = "theme"),
+            @Result(column = "publish_date", property = "publishDate"),
+            @Result(column = "derivation", property = "derivation"),
+            @Result(column = "ref_times", property = "refTimes"),
+            @Result(column = "fav_times", property = "favTime"),
+            @Result(column = "content_url", property = "contentUrl")
+    })
+    List<SearchResultPaper> getPaperCardsByPids(@Param("pids") Collection<Long> pids);
+
+    // 批量获取认领条目，顺序由调用方恢复
+    @Select("<script>select " + ADOPTION_COLUMNS + " from paper where stats = 0 and pid in " +
+            "<foreach collection='pids' item='pid' open='(' separator=',' close=')'>#{pid}</foreach>" +
+            "</script>")
+    @Results(id = "paperAdoption", value = {
+            @Result(column = "pid", property = "pid", id = true),
+            @Result(column = "title", property = "title"),
+            @Result(column = "auths", property = "auths", typeHandler = MapTypeHandler.class),
+            @Result(column = "publish_date", property = "publishDate"),
+            @Result(column = "stats", property = "stats")
+    })
+    List<PaperAdo> getPaperAdoptionsByPids(@Param("pids") Collection<Long> pids);
+
+    // 作者名全文检索认领条目
+    @Select("SELECT " + ADOPTION_COLUMNS + " FROM paper WHERE MATCH(str_auths) AGAINST(#{name} IN BOOLEAN MODE) AND stats = 0")
+    @ResultMap("paperAdoption")
+    List<PaperAdo> searchAdoptionsByAuth(String name);
+
+    // 批量获取文献的详细信息，顺序由调用方恢复
+    @Select("<script>select * from paper where stats = 0 and pid in " +
+            "<foreach collection='pids' item='pid' open='(' separator=',' close=')'>#{pid}</foreach>" +
+            "</script>")
+    List<Map<String, Object>> getPapersByPids(@Param("pids") Collection<Long> pids);
+
+    // 获取指定状态的文献
+    @Select("select " + CARD_COLUMNS + " from paper where stats = #{stats}")
+    @ResultMap("paperCard")
+    List<SearchResultPaper> getPaperCardsByStats(int stats);
 
     // 获取检索结果
     @Select("SELECT * FROM paper WHERE MATCH(${condition}) AGAINST(#{keyword} IN NATURAL LANGUAGE MODE) AND stats = 0")
     List<Map<String, Object>> searchByKeywordWithFullText(String condition, String keyword);
 
     // 获取检索结果
-    @Select("SELECT * FROM paper WHERE MATCH(${condition}) AGAINST(CONCAT(#{keyword}, '*') IN BOOLEAN MODE) AND stats = 0")
-    List<Map<String, Object>> searchByKeywordWithBooleanMode(String condition, String keyword);
+    @Select("SELECT " + CARD_COLUMNS + " FROM paper WHERE MATCH(${condition}) AGAINST(CONCAT(#{keyword}, '*') IN BOOLEAN MODE) AND stats = 0")
+    @ResultMap("paperCard")
+    List<SearchResultPaper> searchByKeywordWithBooleanMode(String condition, String keyword);
 
     // 获取检索结果
-    @Select("SELECT * FROM paper WHERE MATCH(${condition}) AGAINST(#{keyword} IN BOOLEAN MODE) AND stats = 0")
-    List<Map<String, Object>> searchByKeywordWithStrictBooleanMode(String condition, String keyword);
+    @Select("SELECT " + CARD_COLUMNS + " FROM paper WHERE MATCH(${condition}) AGAINST(#{keyword} IN BOOLEAN MODE) AND stats = 0")
+    @ResultMap("paperCard")
+    List<SearchResultPaper> searchByKeywordWithStrictBooleanMode(String condition, String keyword);
 
     // 获取检索结果
-    @Select("SELECT * FROM paper WHERE ${condition} LIKE CONCAT(#{keyword}, '%') AND stats = 0")
-    List<Map<String, Object>> searchByKeyword(String condition, String keyword);
+    @Select("SELECT " + CARD_COLUMNS + " FROM paper WHERE ${condition} LIKE CONCAT(#{keyword}, '%') AND stats = 0")
+    @ResultMap("paperCard")
+    List<SearchResultPaper> searchByKeyword(String condition, String keyword);
 
     // 获取所有文献
     @Select("select * from paper where stats = 0")
     List<Map<String, Object>> getPapers();
 
+    // pid 的范围，用于把全表切分成区间
+    @Select("select min(pid) as minPid, max(pid) as maxPid from paper")
+    Map<String, Object> getPidRange();
+
+    // 按pid顺序读取 (after, upTo] 区间内未删除的文献，用于重建ES索引；读取 ES 文档的全部字段，只跳过 refs
+    @Select("select " + INDEX_COLUMNS + " from paper where pid > #{after} and pid <= #{upTo} and stats <> 1 " +
+            "order by pid limit #{limit}")
+    @ResultMap("paperDetail")
+    List<Paper> getPapersInRange(@Param("after") long after, @Param("upTo") long upTo, @Param("limit") int limit);
+
+    // 读取一批文献的当前状态，用于把变更同步到ES；整篇写入的文档要带上 ess_abs，只跳过 refs
+    @Select("<script>select " + INDEX_COLUMNS + " from paper where pid in " +
+            "<foreach collection='pids' item='pid' open='(' separator=',' close=')'>#{pid}</foreach>" +
+            "</script>")
+    @ResultMap("paperDetail")
+    List<Paper> getPapersForSync(@Param("pids") Collection<Long> pids);
+
     @Insert("insert into paper(pid,title,keywords,content_url,auths,category,type,theme,publish_date,derivation,ref_times,fav_times,refs,stats,ess_abs) values(#{pid},#{title},#{keywords},#{contentUrl},#{auths},#{field},#{type},#{theme},#{publishDate},#{derivation},#{refTimes},#{favTimes},#{refs},#{stats},#{essabs})")
     void insertPaper(Long pid,
                      String title,
@@ -66,6 +174,16 @@ public interface PaperMapper extends BaseMapper<Paper> {
             "WHERE pid = #{pid}")
     int updatePaper(Long pid, Map<String,Object> paper);
 
+    // 一条语句把一批文献的引用、收藏增量加到计数上
+    @Update("<script>update paper set " +
+            "ref_times = ref_times + case pid " +
+            "<foreach collection='deltas' item='d'>when #{d.pid} then #{d.refTimes} </foreach>else 0 end, " +
+            "fav_times = fav_times + case pid " +
+            "<foreach collection='deltas' item='d'>when #{d.pid} then #{d.favTimes} </foreach>else 0 end " +
+            "where pid in <foreach collection='deltas' item='d' open='(' separator=',' close=')'>#{d.pid}</foreach>" +
+            "</script>")
+    int addCounters(@Param("deltas") Collection<PaperCounterDelta> deltas);
+
     // 推荐
     @Select("SELECT pid FROM paper " +
             "ORDER BY RAND() " +
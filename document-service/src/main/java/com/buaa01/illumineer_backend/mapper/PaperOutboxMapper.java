@@ -0,0 +1,39 @@
+package com.buaa01.illumineer_backend.mapper;
+
+import com.buaa01.illumineer_backend.entity.PaperOutbox;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface PaperOutboxMapper {
+    /** 计数列，只变更这些列时 ES 做部分更新 */
+    String REF_TIMES = "ref_times";
+    String FAV_TIMES = "fav_times";
+    String STATS = "stats";
+
+    // 记录一篇文章的变更，须和变更在同一事务中调用
+    @Insert("insert into paper_outbox(pid, changed_columns) values(#{pid}, #{columns})")
+    void insert(@Param("pid") Long pid, @Param("columns") String columns);
+
+    // 批量记录变更，columns 为空表示整行变更（新增）
+    @Insert("<script>insert into paper_outbox(pid, changed_columns) values " +
+            "<foreach collection='pids' item='pid' separator=','>(#{pid}, #{columns})</foreach>" +
+            "</script>")
+    void insertAll(@Param("pids") Collection<Long> pids, @Param("columns") String columns);
+
+    // 按顺序领取一批变更并加锁，其他副本跳过已加锁的行
+    @Select("select id, pid, changed_columns as changedColumns from paper_outbox " +
+            "order by id limit #{limit} for update skip locked")
+    List<PaperOutbox> lockBatch(@Param("limit") int limit);
+
+    @Delete("<script>delete from paper_outbox where id in " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
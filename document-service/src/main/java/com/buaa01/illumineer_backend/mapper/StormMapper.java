@@ -3,16 +3,23 @@ package com.buaa01.illumineer_backend.mapper;
 import com.buaa01.illumineer_backend.entity.Paper;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 import org.springframework.data.relational.core.sql.In;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
 @Mapper
 public interface StormMapper {
-    @Insert("insert into paper(pid,title,keywords,content_url,auths,field,type,theme,publish_date,derivation,ref_times,fav_times,refs,stats,ess_abs) values(#{pid},#{title},#{keywords},#{contentUrl},#{auths},#{field},#{type},#{theme},#{publishDate},#{derivation},#{refTimes},#{favTimes},#{refs},#{stats},#{essAbs})")
+    @Insert("insert into paper(pid,title,keywords,content_url,auths,category,type,theme,publish_date,derivation,ref_times,fav_times,refs,stats,ess_abs) values(#{pid},#{title},#{keywords},#{contentUrl},#{auths},#{field},#{type},#{theme},#{publishDate},#{derivation},#{refTimes},#{favTimes},#{refs},#{stats},#{essAbs})")
     void insertPaper(Long pid,
                      String title,
                      String essAbs,
@@ -28,4 +35,41 @@ public interface StormMapper {
                      Integer refTimes,
                      Integer favTimes,
                      Integer stats);
-}
\ No newline at end of file
+
+    // 多行插入，已存在的pid跳过；返回实际新增的行数。不用 on duplicate key update：
+    // 驱动默认按匹配行计数，重复的行也会计入
+    @Insert("<script>insert ignore into paper(pid,title,keywords,content_url,auths,category,type,theme,publish_date,derivation,ref_times,fav_times,refs,stats,ess_abs) values " +
+            "<foreach collection='papers' item='p' separator=','>" +
+            "(#{p.pid},#{p.title}," +
+            "#{p.keywords,typeHandler=com.buaa01.illumineer_backend.handler.StringListTypeHandler}," +
+            "#{p.contentUrl}," +
+            "#{p.auths,typeHandler=com.buaa01.illumineer_backend.handler.MapTypeHandler}," +
+            "#{p.category},#{p.type},#{p.theme},#{p.publishDate},#{p.derivation},#{p.refTimes},#{p.favTimes}," +
+            "#{p.refs,typeHandler=com.buaa01.illumineer_backend.handler.LongListTypeHandler}," +
+            "#{p.stats},#{p.essAbs})" +
+            "</foreach>" +
+            "</script>")
+    int insertPapers(@Param("papers") List<Paper> papers);
+
+    // 一批pid中已经存在的pid
+    @Select("<script>select pid from paper where pid in " +
+            "<foreach collection='pids' item='pid' open='(' separator=',' close=')'>#{pid}</foreach>" +
+            "</script>")
+    List<Long> getExistingPids(@Param("pids") Collection<Long> pids);
+
+    // 流式读取所有pid，用于构建布隆过滤器
+    @Select("select pid from paper")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    void scanPids(ResultHandler<Long> handler);
+
+    @Select("select count(*) from paper")
+    long countPapers();
+
+    // paper 表的建表语句，用于读取二级索引的定义
+    @Select("show create table paper")
+    Map<String, Object> showCreatePaper();
+
+    // 批量导入前后删除、重建索引
+    @Update("alter table paper ${ddl}")
+    void alterPaper(@Param("ddl") String ddl);
+}
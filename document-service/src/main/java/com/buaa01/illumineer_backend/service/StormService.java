@@ -9,4 +9,11 @@ import java.util.concurrent.CompletableFuture;
 
 public interface StormService {
     CompletableFuture<String> getStorm() throws URISyntaxException, IOException, ParserConfigurationException, SAXException;
+
+    /**
+     * 从本地 OpenAlex 快照目录批量导入
+     * @param dir 快照目录
+     * @return 新增的文献数
+     */
+    CompletableFuture<String> bulkLoad(String dir);
 }
@@ -1,28 +1,50 @@
 package com.buaa01.illumineer_backend.service.impl.paper;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.alibaba.fastjson2.JSON;
 import com.buaa01.illumineer_backend.entity.CustomResponse;
 import com.buaa01.illumineer_backend.entity.Paper;
 import com.buaa01.illumineer_backend.mapper.PaperMapper;
 import com.buaa01.illumineer_backend.service.paper.PaperEsUploadService;
-import com.buaa01.illumineer_backend.tool.ESTool;
 import com.buaa01.illumineer_backend.tool.ElasticSearchTool;
+import com.buaa01.illumineer_backend.tool.PaperBulkBuffer;
+import com.buaa01.illumineer_backend.tool.PaperIndexTool;
+import com.buaa01.illumineer_backend.tool.RedisTool;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.concurrent.Future;
-import java.util.stream.Collectors;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-
+/**
+ * 把 MySQL 中的论文重建到 ES 的新版本索引，完成后切换别名，重建期间检索仍读旧索引：
+ * 按 pid 把全表切成若干区间并行处理，每个区间按 pid 顺序分页读取，通过 Bulk 请求批量写入。
+ * 每个区间写完一页后记录最后的 pid，中途失败时下次从记录处继续写同一个新索引。
+ * 批量写入只新建文档，可能把重建期间已删除的论文按先前读到的数据写回，切换前按数据库的当前状态再删除一次。
+ * 重建由 Redis 锁保证同一时间只有一个在进行
+ */
 @Slf4j
 @Service
 public class PaperEsUploadServiceImpl implements PaperEsUploadService {
+    /** 区间划分（JSON，[[after, upTo], ...]），重建完成后删除 */
+    private static final String SLICES_KEY = "es:reindex:slices";
+    /** 各区间已写入的最后一个pid（hash，区间序号 → pid） */
+    private static final String CHECKPOINT_KEY = "es:reindex:checkpoint";
+    /** 同一时间只有一个副本重建 */
+    private static final String LOCK_KEY = "es:reindex:lock";
 
     @Autowired
     private PaperMapper paperMapper;
@@ -30,53 +52,188 @@ public class PaperEsUploadServiceImpl implements PaperEsUploadService {
     @Autowired
     private ElasticSearchTool elasticSearchTool;
 
-    private static final int PAGE_SIZE = 1000; // 每次查询1000条数据
+    @Autowired
+    private PaperIndexTool paperIndexTool;
+
+    @Autowired
+    private RedisTool redisTool;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    /** 并行处理的区间数 */
+    @Value("${es.reindex.slices:4}")
+    private int sliceCount;
+
+    /** 每次从数据库读取的条数 */
+    @Value("${es.reindex.page-size:1000}")
+    private int pageSize;
+
+    /** 每个 Bulk 请求的最大条数 */
+    @Value("${es.reindex.bulk-docs:1000}")
+    private int bulkDocs;
+
+    /** 每个 Bulk 请求的最大字节数（估算） */
+    @Value("${es.reindex.bulk-bytes:5242880}")
+    private long bulkBytes;
+
+    /** 重建锁的有效期（秒），重建过程中由续约线程不断续期 */
+    @Value("${es.reindex.lock-seconds:300}")
+    private long lockSeconds;
+
     @Override
-    public CustomResponse UploadPaperInEs(){
-        int pageNum = 1;
-        ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        long lastId = 0;
-        try{
-            while (true) {
-                int offset = (pageNum - 1) * PAGE_SIZE;
-                QueryWrapper<Paper> queryWrapper = new QueryWrapper<>();
-                queryWrapper.gt("pid", lastId).orderByAsc("pid").last("LIMIT " + PAGE_SIZE);
-
-                List<Paper> papers = paperMapper.selectList(queryWrapper);
-                // 如果没有数据了，跳出循环
+    public CustomResponse UploadPaperInEs() {
+        String owner = UUID.randomUUID().toString();
+        if (!redisTool.setIfAbsent(LOCK_KEY, owner, lockSeconds)) {
+            return new CustomResponse(409, "已有重建正在进行", null);
+        }
+        AtomicBoolean locked = new AtomicBoolean(true);
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "es-reindex-lock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, lockSeconds / 3);
+        heartbeat.scheduleAtFixedRate(() -> {
+            if (locked.get() && !redisTool.expireIfEquals(LOCK_KEY, owner, lockSeconds)) {
+                locked.set(false);
+                log.warn("重建锁已失效，停止重建");
+            }
+        }, period, period, TimeUnit.SECONDS);
+        try {
+            return rebuild(locked);
+        } finally {
+            heartbeat.shutdownNow();
+            redisTool.deleteIfEquals(LOCK_KEY, owner);
+        }
+    }
+
+    // 持有重建锁时执行重建；锁失效后不再写入，也不切换别名，下次从断点继续
+    private CustomResponse rebuild(AtomicBoolean locked) {
+        long start = System.currentTimeMillis();
+        AtomicLong indexed = new AtomicLong();
+        AtomicLong requests = new AtomicLong();
+        try {
+            if (!paperIndexTool.isRebuilding()) {
+                // 没有进行中的新索引，之前的进度对应的索引已经不存在
+                redisTool.deleteKey(SLICES_KEY);
+                redisTool.deleteKey(CHECKPOINT_KEY);
+                paperIndexTool.clearRebuildDeletes();
+            }
+            List<long[]> slices = getSlices();
+            if (slices.isEmpty()) {
+                return new CustomResponse(200, "没有需要更新的论文", null);
+            }
+            String target = paperIndexTool.beginRebuild();
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < slices.size(); i++) {
+                int slice = i;
+                futures.add(CompletableFuture.supplyAsync(() -> reindexSlice(
+                        target, slice, slices.get(slice), locked, indexed, requests), taskExecutor));
+            }
+            boolean finished = true;
+            for (CompletableFuture<Boolean> future : futures) {
+                finished &= future.join();
+            }
+            if (!finished) {
+                return new CustomResponse(500, "部分论文写入失败，再次更新时将从断点继续", null);
+            }
+            if (!elasticSearchTool.deletePapers(target, getDeletedPids())) {
+                return new CustomResponse(500, "重建期间删除的论文未能从新索引移除，请重新更新", null);
+            }
+            if (!locked.get()) {
+                return new CustomResponse(500, "重建锁已失效，再次更新时将从断点继续", null);
+            }
+            paperIndexTool.finishRebuild(target);
+            redisTool.deleteKey(SLICES_KEY);
+            redisTool.deleteKey(CHECKPOINT_KEY);
+            paperIndexTool.clearRebuildDeletes();
+        } catch (IOException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("重建论文索引出错：{}", e.getMessage());
+            return new CustomResponse(500, "更新到ElasticSearch失败", null);
+        }
+        long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+        log.info("ES 重建完成：写入 {} 篇，{} 次 Bulk 请求，耗时 {} 秒，{} 篇/秒",
+                indexed.get(), requests.get(), seconds, indexed.get() / seconds);
+        return new CustomResponse(200, "更新到ElasticSearch成功", null);
+    }
+
+    // 重建期间删除过、现在仍是删除状态（或已不存在）的论文；删除后又恢复的论文不算
+    private Set<Long> getDeletedPids() {
+        Set<Long> deleted = paperIndexTool.getRebuildDeletes();
+        if (deleted.isEmpty()) {
+            return deleted;
+        }
+        for (Paper paper : paperMapper.getPapersForSync(deleted)) {
+            if (!Integer.valueOf(1).equals(paper.getStats())) {
+                deleted.remove(paper.getPid());
+            }
+        }
+        return deleted;
+    }
+
+    // 读取上次未完成的区间划分，没有时按当前 pid 范围重新划分
+    private List<long[]> getSlices() {
+        String saved = redisTool.getObjectString(SLICES_KEY);
+        if (saved != null) {
+            return JSON.parseArray(saved, long[].class);
+        }
+        List<long[]> slices = new ArrayList<>();
+        Map<String, Object> range = paperMapper.getPidRange();
+        if (range == null || range.get("minPid") == null) {
+            return slices;
+        }
+        long min = ((Number) range.get("minPid")).longValue();
+        long max = ((Number) range.get("maxPid")).longValue();
+        long step = Math.max(1, (max - min) / sliceCount + 1);
+        for (long after = min - 1; after < max; after += step) {
+            slices.add(new long[]{after, Math.min(max, after + step)});
+        }
+        redisTool.setObjectValue(SLICES_KEY, slices);
+        redisTool.deleteKey(CHECKPOINT_KEY);
+        return slices;
+    }
+
+    // 处理一个区间，返回是否处理完
+    private boolean reindexSlice(String target, int slice, long[] range, AtomicBoolean locked,
+                                 AtomicLong indexed, AtomicLong requests) {
+        Object checkpoint = redisTool.hashGet(CHECKPOINT_KEY, String.valueOf(slice));
+        long lastPid = checkpoint == null ? range[0] : Long.parseLong(checkpoint.toString());
+        PaperBulkBuffer buffer = new PaperBulkBuffer(
+                papers -> elasticSearchTool.bulkCreatePapers(target, papers), bulkDocs, bulkBytes);
+        long start = System.currentTimeMillis();
+        try {
+            while (locked.get()) {
+                List<Paper> papers = paperMapper.getPapersInRange(lastPid, range[1], pageSize);
                 if (papers.isEmpty()) {
                     break;
                 }
-                // 更新 lastId 为当前批次的最后一条数据 ID
-                lastId = papers.get(papers.size() - 1).getPid();
-                // 并行处理当前页数据
-                List<? extends Future<?>> futures = papers.stream()
-                        .map(paper -> executorService.submit(() -> {
-                            try {
-                                if(!elasticSearchTool.isExistPaper(paper.getPid())){
-                                    elasticSearchTool.addPaper(paper);
-                                }
-                            } catch (Exception e) {
-                                // 单条数据处理异常，记录日志或处理
-                                e.printStackTrace();
-                            }
-                        }))
-                        .collect(Collectors.toList());
-
-                // 等待所有任务完成
-                for (Future<?> future : futures) {
-                    try {
-                        future.get();
-                    } catch (Exception e) {
-                        e.printStackTrace(); // 处理线程执行异常
-                    }
+                for (Paper paper : papers) {
+                    buffer.add(paper);
                 }
-                // 处理完一批数据后，继续查询下一批
-                pageNum++;
+                // 写完这一页再记录进度，中途失败时这一页会重新写入，已存在的文档不会被覆盖
+                buffer.flush();
+                lastPid = papers.get(papers.size() - 1).getPid();
+                redisTool.hashPut(CHECKPOINT_KEY, String.valueOf(slice), lastPid);
+            }
+            if (!locked.get()) {
+                log.warn("区间 {} 在 pid {} 之后因重建锁失效停止", slice, lastPid);
+                return false;
             }
-        }finally {
-            executorService.shutdown();
+            long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+            log.info("区间 {} ({}, {}] 完成：写入 {} 篇，{} 篇/秒", slice, range[0], range[1],
+                    buffer.getIndexed(), buffer.getIndexed() / seconds);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("区间 {} 在 pid {} 之后出错：{}", slice, lastPid, e.getMessage());
+            return false;
+        } finally {
+            indexed.addAndGet(buffer.getIndexed());
+            requests.addAndGet(buffer.getRequests());
         }
-        return new CustomResponse(200,"更新到ElasticSearch成功",null);
     }
 }
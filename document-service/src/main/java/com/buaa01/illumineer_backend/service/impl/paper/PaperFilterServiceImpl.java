@@ -1,194 +1,159 @@
 package com.buaa01.illumineer_backend.service.impl.paper;
 
-import com.alibaba.fastjson.JSON;
-import com.buaa01.illumineer_backend.entity.CustomResponse;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.buaa01.illumineer_backend.entity.ES.ESSearchPage;
 import com.buaa01.illumineer_backend.entity.SearchResultPaper;
+import com.buaa01.illumineer_backend.entity.SearchSession;
 import com.buaa01.illumineer_backend.service.paper.PaperFilterService;
-import com.buaa01.illumineer_backend.tool.RedisTool;
+import com.buaa01.illumineer_backend.tool.ElasticSearchTool;
 import com.buaa01.illumineer_backend.utils.FilterCondition;
+import com.buaa01.illumineer_backend.utils.SearchFacetIndex;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.stream.Collectors;
 
 @Service
 public class PaperFilterServiceImpl implements PaperFilterService {
+    /** 每个实例最多缓存的筛选索引数，按最近访问淘汰 */
+    private static final int FACET_INDEX_CACHE_SIZE = 256;
 
     @Autowired
     private PaperSearchServiceImpl paperSearchServiceImpl;
 
     @Autowired
-    @Qualifier("taskExecutor")
-    private Executor taskExecutor;
+    private ElasticSearchTool elasticSearchTool;
+
+    // 检索会话保存后不再修改，按会话id缓存会话和它的位图索引
+    private final Map<String, FacetSession> facetIndexes = Collections.synchronizedMap(
+            new LinkedHashMap<String, FacetSession>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FacetSession> eldest) {
+                    return size() > FACET_INDEX_CACHE_SIZE;
+                }
+            });
 
-    @Autowired
-    private RedisTool redisTool;
+    /** 缓存的检索会话，位图索引在第一次在内存中筛选时建立 */
+    private static class FacetSession {
+        private final SearchSession session;
+        private SearchFacetIndex index;
 
-    @Override
-    public Map<String, Object> filterSearchResult(Map<String, Object> scMap, Integer size, Integer offset,
-            Integer sortType, Integer order) {
-        List<SearchResultPaper> sortedPapers;
-
-        if (!JudgeFilterConditionExist(scMap)) {
-            deleteFromRedis_filterCondition();// 更新筛选条件
-            saveToRedis_filterCondition(scMap);
-
-            FilterCondition sc = new FilterCondition(scMap);
-
-            boolean isYearEmpty = sc.getYear().isEmpty();
-            boolean isDerivationEmpty = sc.getDerivation().isEmpty();
-            boolean isTypeEmpty = sc.getType().isEmpty();
-            boolean isThemeEmpty = sc.getTheme().isEmpty();
-
-            Set<String> filterYears = isYearEmpty ? Collections.emptySet() : new HashSet<>(sc.getYear());
-            Set<String> filterDerivations = isDerivationEmpty ? Collections.emptySet()
-                    : new HashSet<>(sc.getDerivation());
-            Set<String> filterTypes = isTypeEmpty ? Collections.emptySet() : new HashSet<>(sc.getType());
-            Set<String> filterThemes = isThemeEmpty ? Collections.emptySet() : new HashSet<>(sc.getTheme());
-
-            List<SearchResultPaper> filteredPapers = paperSearchServiceImpl.getFromRedis().parallelStream()
-                    .filter(paper -> {
-                        Integer PublishYear = paper.getPublishDate().getYear() + 1900;
-                        boolean matchesYear = isYearEmpty || filterYears.contains(PublishYear.toString());
-                        if (!matchesYear)
-                            return false; // 年份不匹配
-
-                        boolean matchesDerivation = isDerivationEmpty
-                                || filterDerivations.contains(paper.getDerivation());
-                        if (!matchesDerivation)
-                            return false; // 来源不匹配
-
-                        boolean matchesType = isTypeEmpty || filterTypes.contains(paper.getType());
-                        if (!matchesType)
-                            return false; // 类型不匹配
-
-                        boolean matchesTheme = isThemeEmpty || filterThemes.contains(paper.getTheme());
-                        if (!matchesTheme)
-                            return false; // 主题不匹配
-
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-
-            sortedPapers = sortPapers(filteredPapers, sortType, order);
-
-            deleteFromRedis_FilterPaper();// 更新存储结果
-            saveToRedis_filtered(sortedPapers);
-        } else {
-            sortedPapers = getFromRedis_FilterPaper();
+        FacetSession(SearchSession session) {
+            this.session = session;
         }
 
-        List<SearchResultPaper> resultPapers = paperSearchServiceImpl.searchByPage(sortedPapers, size, offset);
-
-        HashMap<String, Object> returnValues = new HashMap<>();
-        returnValues.put("resultPapers", resultPapers);
-        returnValues.put("total", sortedPapers.size());
-        return returnValues;
-    }
-
-    List<SearchResultPaper> sortPapers(List<SearchResultPaper> papers, Integer sortType, Integer order) {
-        Comparator<SearchResultPaper> comparator;
-
-        if (sortType == 1) {
-            comparator = Comparator.comparing(SearchResultPaper::getPublishDate);
-        } else if (sortType == 2) {
-            comparator = Comparator.comparingInt(SearchResultPaper::getRefTimes);
-        } else if (sortType == 3) {
-            comparator = Comparator.comparingInt(SearchResultPaper::getFavTime);
-        } else {
-            return papers; // 如果没有匹配的排序类型，直接返回原始列表
+        synchronized SearchFacetIndex getIndex() {
+            if (index == null) {
+                index = new SearchFacetIndex(session.getPapers());
+            }
+            return index;
         }
 
-        if (order == 0) { // 降序
-            comparator = comparator.reversed();
+        // 会话只保存了前 search.cache.window 条
+        boolean isTruncated() {
+            return session.getTotal() != null && session.getTotal() > session.getPapers().size();
         }
-
-        SearchResultPaper[] paperArray = papers.toArray(new SearchResultPaper[0]);
-        Arrays.parallelSort(paperArray, comparator);
-
-        return Arrays.asList(paperArray);
-
-        // return papers.parallelStream()
-        // .sorted(comparator)
-        // .collect(Collectors.toList());
     }
 
-    /*
-     * ========== 缓存操作 ==========
-     */
-
-    // 判断筛选条件是否存在或是否相等
-    public Boolean JudgeFilterConditionExist(Map<String, Object> sc) {
-        if (!redisTool.isExist("FilterCondition")) {
-            return false;
-        } else {
-            Map<String, Object> tsc = getFilterCondition();
-            if (tsc != null && tsc.equals(sc)) // equals重写了
-                return true;
-            else
-                return false;
+    @Override
+    public Map<String, Object> filterSearchResult(String sessionId, Map<String, Object> scMap, Integer size,
+            Integer offset, Integer sortType, Integer order) {
+        FacetSession facetSession = getFacetSession(sessionId);
+        if (facetSession == null) {
+            return null;
+        }
+        if (offset == null || offset == 0) {
+            offset = 1;
+        }
+        if (size == null || size == 0) {
+            size = 20;
+        }
+        FilterCondition sc = new FilterCondition(scMap);
+
+        // 会话只保存了部分结果时在 ES 中筛选，覆盖全部命中结果；ES 出错时退回到保存的部分
+        if (facetSession.isTruncated()) {
+            Map<String, Object> returnValues = filterInEs(facetSession.session, sc, size, offset, sortType, order);
+            if (returnValues != null) {
+                returnValues.put("sessionId", sessionId);
+                return returnValues;
+            }
         }
-    }
 
-    // 将筛选条件存到 redis 中
-    public void saveToRedis_filterCondition(Map<String, Object> sc) {
-        redisTool.setObjectValue("FilterCondition", sc);
-    }
+        // 筛选条件转换为位图运算
+        SearchFacetIndex index = facetSession.getIndex();
+        BitSet bits = index.filter(sc);
 
-    // 删除 redis 中的筛选条件信息
-    public void deleteFromRedis_filterCondition() {
-        redisTool.deleteKey("FilterCondition");
-    }
+        // 只回表当前页
+        List<Long> pids = new ArrayList<>();
+        for (SearchResultPaper paper : index.getPage(bits, sortType, order, (offset - 1) * size, size)) {
+            pids.add(paper.getPid());
+        }
+        List<SearchResultPaper> resultPapers = paperSearchServiceImpl.getSearchResultPapers(pids);
 
-    public Map<String, Object> getFilterCondition() {
-        String temp = (String) redisTool.getValue("FilterCondition");
-        return JSON.parseObject(temp, Map.class);
+        HashMap<String, Object> returnValues = new HashMap<>();
+        returnValues.put("resultPapers", resultPapers);
+        returnValues.put("total", bits.cardinality());
+        returnValues.put("options", index.getOptions(sc)); // 当前筛选条件下各选项的数量
+        returnValues.put("limit", index.getPapers().size()); // 筛选覆盖的结果数
+        returnValues.put("sessionId", sessionId);
+        return returnValues;
     }
 
-    // 将筛选结果存到 redis 中
-    public void saveToRedis_filtered(List<SearchResultPaper> filteredPapers) {
-        for (SearchResultPaper paper : filteredPapers) {
-            CompletableFuture.runAsync(() -> {
-                redisTool.setExObjectValue("FilterPaper" + paper.getPid(), paper); // 异步更新到redis
-            }, taskExecutor);
+    // 按会话保存的检索条件在 ES 中筛选当前页，并在同一请求中聚合各选项的数量；ES 出错时返回null
+    private Map<String, Object> filterInEs(SearchSession session, FilterCondition sc, Integer size, Integer offset,
+                                           Integer sortType, Integer order) {
+        Query query = paperSearchServiceImpl.getSessionQuery(session);
+        if (query == null) {
+            return null;
         }
-    }
-
-    // 从 redis 中获取缓存的筛选信息
-    public List<SearchResultPaper> getFromRedis_FilterPaper() {
-        List<SearchResultPaper> papers = new ArrayList<>();
-        Set<String> keySet = redisTool.getKeysByPrefix("FilterPaper");
-
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-        for (String key : keySet) {
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {// 异步执行任务
-                SearchResultPaper paper = redisTool.getObjectByClass(key,
-                        SearchResultPaper.class);
-                synchronized (papers) { // 确保线程安全
-                    papers.add(paper);
-                }
-            }, taskExecutor);
-            futures.add(future);
+        // 没有指定排序时保持检索时的顺序
+        if (sortType == null || sortType < 1 || sortType > 3) {
+            sortType = session.getSortType();
+            order = session.getOrder();
+        }
+        // ES 分页最多取到前 MAX_RESULT_WINDOW 条，超出时返回空页
+        int from = (offset - 1) * size;
+        int pageSize = Math.max(0, Math.min(size, ElasticSearchTool.MAX_RESULT_WINDOW - from));
+        ESSearchPage page = elasticSearchTool.filterPaperPage(query, sc, sortType, order, pageSize,
+                pageSize == 0 ? 1 : offset);
+        if (page == null) {
+            return null;
         }
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        return papers;
+        List<Long> pids = new ArrayList<>();
+        for (SearchResultPaper paper : page.getPapers()) {
+            pids.add(paper.getPid());
+        }
+        HashMap<String, Object> returnValues = new HashMap<>();
+        returnValues.put("resultPapers", paperSearchServiceImpl.getSearchResultPapers(pids));
+        returnValues.put("total", page.getTotal());
+        returnValues.put("options", page.getOptions()); // 当前筛选条件下各选项的数量，由ES聚合得到
+        returnValues.put("limit", Math.min(page.getTotal(), ElasticSearchTool.MAX_RESULT_WINDOW)); // 最多能翻到的结果数
+        return returnValues;
     }
 
-    // 删除 redis 中的存储的筛选结果
-    public void deleteFromRedis_FilterPaper() {
-        redisTool.deleteByPrefix("FilterPaper");
+    // 读取会话，本地没有时读取一次会话并缓存
+    private FacetSession getFacetSession(String sessionId) {
+        if (sessionId == null || sessionId.isBlank()) {
+            return null;
+        }
+        FacetSession facetSession = facetIndexes.get(sessionId);
+        if (facetSession != null) {
+            paperSearchServiceImpl.touchSearchSession(sessionId);
+            return facetSession;
+        }
+        SearchSession session = paperSearchServiceImpl.getSearchSession(sessionId);
+        if (session == null) {
+            return null;
+        }
+        facetSession = new FacetSession(session);
+        facetIndexes.put(sessionId, facetSession);
+        return facetSession;
     }
 
 }
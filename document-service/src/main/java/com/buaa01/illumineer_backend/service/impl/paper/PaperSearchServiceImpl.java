@@ -6,39 +6,65 @@ import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.buaa01.illumineer_backend.config.PaperRankConfig;
 import com.buaa01.illumineer_backend.entity.CustomResponse;
+import com.buaa01.illumineer_backend.entity.ES.ESSearchPage;
 import com.buaa01.illumineer_backend.entity.Paper;
 import com.buaa01.illumineer_backend.entity.SearchResultPaper;
+import com.buaa01.illumineer_backend.entity.SearchSession;
 import com.buaa01.illumineer_backend.mapper.PaperMapper;
 import com.buaa01.illumineer_backend.mapper.SearchResultPaperMapper;
 import com.buaa01.illumineer_backend.service.paper.PaperSearchService;
 import com.buaa01.illumineer_backend.tool.ElasticSearchTool;
+import com.buaa01.illumineer_backend.tool.PaperBatchTool;
+import com.buaa01.illumineer_backend.tool.PaperCounterTool;
+import com.buaa01.illumineer_backend.tool.PaperDetailCache;
 import com.buaa01.illumineer_backend.tool.RedisTool;
 import com.buaa01.illumineer_backend.utils.PaperSortScorer;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class PaperSearchServiceImpl implements PaperSearchService {
+    /** 查询结果缓存的键前缀 */
+    private static final String SEARCH_CACHE_PREFIX = "searchCache:";
+    /** 检索结果行缓存的键前缀 */
+    private static final String SEARCH_PAPER_PREFIX = "searchPaper:";
+    /** 检索会话的键前缀 */
+    private static final String SEARCH_SESSION_PREFIX = "searchSession:";
+    /** 检索类型：一框式检索 */
+    private static final String KEYWORD_SEARCH = "keyword";
+    /** 检索类型：高级检索 */
+    private static final String ADVANCED_SEARCH = "advanced";
+
+    /** 查询结果缓存的有效期（秒） */
+    @Value("${search.cache.ttl:300}")
+    private long searchCacheTtl;
+
+    /** 查询结果缓存保存的最大条数 */
+    @Value("${search.cache.window:1000}")
+    private int searchCacheWindow;
+
+    /** 检索会话的有效期（秒），访问时续期 */
+    @Value("${search.session.ttl:1800}")
+    private long searchSessionTtl;
 
     @Autowired
     private PaperMapper paperMapper;
@@ -57,6 +83,14 @@ public class PaperSearchServiceImpl implements PaperSearchService {
     private Executor taskExecutor;
     @Autowired
     private ElasticSearchTool elasticSearchTool;
+    @Autowired
+    private PaperBatchTool paperBatchTool;
+    @Autowired
+    private PaperCounterTool paperCounterTool;
+    @Autowired
+    private PaperDetailCache paperDetailCache;
+    @Autowired
+    private PaperRankConfig paperRankConfig;
 
     /**
      * 根据pid获取文献信息
@@ -67,30 +101,31 @@ public class PaperSearchServiceImpl implements PaperSearchService {
     @Override
     public CustomResponse getPaperByPid(Long pid) {
         CustomResponse customResponse = new CustomResponse();
-        Map<String, Object> paper = paperMapper.getPaperByPid(pid);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            // keywords 的转换
-            List<String> keywords = objectMapper.readValue(paper.get("keywords").toString(),
-                    new TypeReference<List<String>>() {
-                    });
-            paper.put("keywords", keywords);
-
-            // auths 的转换
-            Map<String, Integer> auths = objectMapper.readValue(paper.get("auths").toString(),
-                    new TypeReference<Map<String, Integer>>() {
-                    });
-            paper.put("auths", auths);
-
-            // refs 的转换
-            List<Long> refs = objectMapper.readValue(paper.get("refs").toString(), new TypeReference<List<Long>>() {
-            });
-            paper.put("refs", refs);
-        } catch (Exception e) {
-            e.printStackTrace();
+        Paper paper = paperDetailCache.get(pid);
+        if (paper == null) {
+            customResponse.setCode(404);
+            customResponse.setMessage("文献不存在！");
+            return customResponse;
         }
-        customResponse.setData(paper);
+        paperCounterTool.applyPending(paper);
+        // 详情页沿用数据库列名作为返回字段
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pid", paper.getPid());
+        result.put("title", paper.getTitle());
+        result.put("theme", paper.getTheme());
+        result.put("ess_abs", paper.getEssAbs());
+        result.put("keywords", paper.getKeywords());
+        result.put("auths", paper.getAuths());
+        result.put("derivation", paper.getDerivation());
+        result.put("type", paper.getType());
+        result.put("publish_date", paper.getPublishDate());
+        result.put("category", paper.getCategory());
+        result.put("fav_times", paper.getFavTimes());
+        result.put("ref_times", paper.getRefTimes());
+        result.put("refs", paper.getRefs());
+        result.put("content_url", paper.getContentUrl());
+        result.put("stats", paper.getStats());
+        customResponse.setData(result);
         return customResponse;
     }
     @Override
@@ -103,20 +138,9 @@ public class PaperSearchServiceImpl implements PaperSearchService {
             customResponse.setData(null);
             return customResponse;
         }
-        Paper paper1 = paperMapper.selectById(papers.get(0).getPid());
-        Map<String, Object> paper = new HashMap<>();
-        Class<?> clazz = paper1.getClass();
-
-        // 遍历所有字段（包括私有字段）
-        try{
-            for (Field field : clazz.getDeclaredFields()) {
-                field.setAccessible(true); // 设置字段可访问
-                String fieldName = field.getName();
-                Object fieldValue = field.get(paper1);
-                paper.put(fieldName, fieldValue);
-            }
-        }catch (IllegalAccessException illegalAccessException){
-            illegalAccessException.printStackTrace();
+        // 序列化后的字段与 Paper 的属性名一致，不需要再逐个拷贝
+        Paper paper = paperMapper.getPaperDetailByPid(papers.get(0).getPid());
+        if (paper == null) {
             customResponse.setCode(500);
             customResponse.setData(null);
             return customResponse;
@@ -138,11 +162,9 @@ public class PaperSearchServiceImpl implements PaperSearchService {
         CustomResponse customResponse = new CustomResponse();
         int total = 0;
 
-        List<Map<String, Object>> papers = paperMapper.getPapersByStats(stats);
-        total = papers.size();
-
-        // 1. 将 Paper 转换成 SearchReultPaper 类型
-        List<SearchResultPaper> searchResultPapers = papersToSearchResultPaper(papers);
+        // 1. 只查询列表需要的列，直接映射为 SearchResultPaper
+        List<SearchResultPaper> searchResultPapers = paperMapper.getPaperCardsByStats(stats);
+        total = searchResultPapers.size();
 
         // 2. searchbByOrder 对搜索结果进行排序：sortType
         searchResultPapers = searchByOrder(searchResultPapers, sortType, order);
@@ -165,22 +187,43 @@ public class PaperSearchServiceImpl implements PaperSearchService {
      * @param keyword   搜索内容
      * @param size      一页多少条内容
      * @param offset    第几页
-     * @param sortType  根据什么进行排序：1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数
+     * @param sortType  根据什么进行排序：1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数，4=综合评分
      * @param order     0=降序，1=升序
      * @return SearchResultPaper
      */
     @Override
     public CustomResponse searchPapers(String condition, String keyword, Integer size, Integer offset, Integer sortType,
             Integer order) {
-        // 模糊搜索：keyword
-        List<Map<String, Object>> papers = searchByKeyword(condition, keyword, size, offset);
-
-        List<SearchResultPaper> searchResultPapers = papersToSearchResultPaper(papers);
-        CompletableFuture.runAsync(() -> {
-            deleteFromRedis(); // 清空上次缓存的搜索结果
-            saveToRedis(searchResultPapers); // 存储新的搜索结果
-        }, taskExecutor);
-        return getSearchResult(searchResultPapers, sortType, order, size, offset);
+        return searchPapers(condition, keyword, size, offset, sortType, order, null, null);
+    }
+
+    /**
+     * 一框式检索：排序、分页和总数统计交给ES完成，每次只取当前页
+     *
+     * @param searchAfter 上一页返回的 cursor，传入时按游标翻页，深分页延迟不随页码增长
+     * @param sessionId   检索会话id，为空时新建；之后的筛选、排序、翻页都基于该会话保存的结果集
+     * @return SearchResultPaper，以及下一页的 cursor 和 sessionId
+     */
+    @Override
+    public CustomResponse searchPapers(String condition, String keyword, Integer size, Integer offset, Integer sortType,
+            Integer order, List<String> searchAfter, String sessionId) {
+        if (offset == null || offset == 0) {
+            offset = 1;
+        }
+        if (size == null || size == 0) {
+            size = 20;
+        }
+        Query query = elasticSearchTool.buildConditionQuery(condition, keyword);
+        String cacheKey = getSearchCacheKey(KEYWORD_SEARCH, condition, keyword, sortType, order);
+        ESSearchPage window = getSearchWindow(query, cacheKey, sortType, order);
+        if (window == null || window.getTotal() == 0) {
+            // ES 不可用或没有命中时，回退到 MySQL 全文检索，在内存中排序分页
+            List<SearchResultPaper> searchResultPapers = searchByKeyword(condition, keyword);
+            return getSearchResult(searchResultPapers, sortType, order, size, offset, Collections.singletonList(keyword), sessionId);
+        }
+        SearchSession session = new SearchSession(null, null, KEYWORD_SEARCH, Arrays.asList(condition, keyword),
+                sortType, order);
+        return getPageResult(query, window, session, size, offset, searchAfter, sessionId);
     }
 
     /**
@@ -191,7 +234,7 @@ public class PaperSearchServiceImpl implements PaperSearchService {
      * @param keyword_str（传 name 或者 %name%）
      * @param size          一页多少条内容
      * @param offset        第几页
-     * @param sortType      根据什么进行排序：1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数
+     * @param sortType      根据什么进行排序：1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数，4=综合评分
      * @param order         0=降序，1=升序
      * @return SearchResultPaper
      */
@@ -199,6 +242,51 @@ public class PaperSearchServiceImpl implements PaperSearchService {
     public CustomResponse advancedSearchPapers(String logic_str, String condition_str, String keyword_str, Integer size,
             Integer offset,
             Integer sortType, Integer order) {
+        return advancedSearchPapers(logic_str, condition_str, keyword_str, size, offset, sortType, order, null, null);
+    }
+
+    /**
+     * 高级检索：所有条件编译成一个 ES bool 查询，排序分页在ES中完成
+     *
+     * @param searchAfter 上一页返回的 cursor
+     * @param sessionId   检索会话id，为空时新建
+     * @return SearchResultPaper，以及下一页的 cursor 和 sessionId
+     */
+    @Override
+    public CustomResponse advancedSearchPapers(String logic_str, String condition_str, String keyword_str, Integer size,
+            Integer offset, Integer sortType, Integer order, List<String> searchAfter, String sessionId) {
+        if (offset == null || offset == 0) {
+            offset = 1;
+        }
+        if (size == null || size == 0) {
+            size = 20;
+        }
+        Query query = elasticSearchTool.buildAdvancedQuery(logic_str.split(","), condition_str.split(","),
+                keyword_str.split(","));
+        String cacheKey = getSearchCacheKey(ADVANCED_SEARCH, logic_str, condition_str, keyword_str, sortType, order);
+        ESSearchPage window = getSearchWindow(query, cacheKey, sortType, order);
+        if (window == null) {
+            // 只有 ES 不可用时才回退到 MySQL
+            return advancedSearchPapersFromDB(logic_str, condition_str, keyword_str, size, offset, sortType, order,
+                    sessionId);
+        }
+        SearchSession session = new SearchSession(null, null, ADVANCED_SEARCH,
+                Arrays.asList(logic_str, condition_str, keyword_str), sortType, order);
+        return getPageResult(query, window, session, size, offset, searchAfter, sessionId);
+    }
+
+    // 高级检索各条件的关键词，去掉模糊匹配用的 %，用于 MySQL 回退时的综合评分
+    private List<String> getAdvancedKeywords(String keyword_str) {
+        List<String> keywords = new ArrayList<>();
+        for (String keyword : keyword_str.split(",")) {
+            keywords.add(keyword.replace("%", ""));
+        }
+        return keywords;
+    }
+
+    // ES 不可用时的高级检索：逐个条件查询 MySQL 并做集合运算
+    private CustomResponse advancedSearchPapersFromDB(String logic_str, String condition_str, String keyword_str,
+            Integer size, Integer offset, Integer sortType, Integer order, String sessionId) {
         Set<Long> paper1 = new HashSet<>();
         Set<Long> paper2 = new HashSet<>();
 
@@ -239,69 +327,146 @@ public class PaperSearchServiceImpl implements PaperSearchService {
             }
             paper2.clear();
         }
-        List<Map<String, Object>> paperList = new ArrayList<Map<String, Object>>();
-        for (Long pid : paper1) {
-            Map<String, Object> paper = paperMapper.getPaperByPid(pid);
-            paperList.add(paper);
-        }
-        List<SearchResultPaper> searchResultPapers = papersToSearchResultPaper(paperList);
-
-        deleteFromRedis();
-        saveToRedis(searchResultPapers);
-
-        return getSearchResult(searchResultPapers, sortType, order, size, offset);
+        List<SearchResultPaper> searchResultPapers = paperBatchTool.getPaperCardsByPids(paper1);
+        return getSearchResult(searchResultPapers, sortType, order, size, offset, getAdvancedKeywords(keyword_str),
+                sessionId);
     }
 
     /*
      * ========== 相关方法 ==========
      */
 
-    private List<SearchResultPaper> papersToSearchResultPaper(List<Map<String, Object>> papers) {
-        List<SearchResultPaper> searchResultPapers = new ArrayList<>();
+    /**
+     * 先查共享的查询结果缓存，未命中时从ES取前 searchCacheWindow 条（pid以及筛选、排序用到的字段）、
+     * 总数和筛选项写入缓存
+     * @return 结果窗口，ES出错时返回null
+     */
+    private ESSearchPage getSearchWindow(Query query, String cacheKey, Integer sortType, Integer order) {
+        ESSearchPage window = redisTool.getObjectByClass(cacheKey, ESSearchPage.class);
+        if (window == null) {
+            window = elasticSearchTool.searchPaperPage(query, sortType, order, searchCacheWindow, 1, null);
+            if (window != null && window.getTotal() > 0) {
+                redisTool.setExObjectValue(cacheKey, window, searchCacheTtl, TimeUnit.SECONDS);
+            }
+        }
+        return window;
+    }
+
+    // 查询结果缓存的键：对检索类型、条件、关键词和排序方式规范化后取摘要，所有用户共享
+    private String getSearchCacheKey(String type, Object... params) {
+        StringBuilder sb = new StringBuilder(type);
+        for (Object param : params) {
+            sb.append('|');
+            if (param != null) {
+                sb.append(param.toString().strip().replaceAll("\\s+", " ").toLowerCase());
+            }
+        }
+        return SEARCH_CACHE_PREFIX + DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
 
-        for (Map<String, Object> paper : papers) {
-            Date date;
-            // 判断是否是 ISO 格式，转换date格式
-            if (!paper.get("publish_date").toString().contains(" ")) {
-                date = Date.from(
-                        LocalDateTime.parse(paper.get("publish_date").toString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                                .atZone(ZoneId.systemDefault()).toInstant());
+    // 当前页的 SearchResultPaper：先批量读缓存，未命中的一次批量回表并写回缓存；
+    // 缓存中只存数据库中的计数，尚未写库的增量在读出后再加上，避免同一增量在写库后被重复计入
+    public List<SearchResultPaper> getSearchResultPapers(List<Long> pids) {
+        List<String> keys = new ArrayList<>(pids.size());
+        for (Long pid : pids) {
+            keys.add(SEARCH_PAPER_PREFIX + pid);
+        }
+        Map<Long, SearchResultPaper> paperMap = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        List<SearchResultPaper> cached = redisTool.multiGetObjects(keys, SearchResultPaper.class);
+        for (int i = 0; i < pids.size(); i++) {
+            if (cached.get(i) != null) {
+                paperMap.put(pids.get(i), cached.get(i));
             } else {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss z yyyy", Locale.ENGLISH);
-                date = Date.from(LocalDateTime.parse(paper.get("publish_date").toString(), formatter)
-                        .atZone(ZoneId.systemDefault()).toInstant());
+                missing.add(pids.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, SearchResultPaper> loaded = new HashMap<>();
+            for (SearchResultPaper paper : paperBatchTool.getStoredPaperCardsByPids(missing)) {
+                paperMap.put(paper.getPid(), paper);
+                loaded.put(SEARCH_PAPER_PREFIX + paper.getPid(), paper);
             }
+            redisTool.setExObjectValues(loaded, searchCacheTtl, TimeUnit.SECONDS);
+        }
+        // 每篇只加一次，pids 中可能有重复
+        paperCounterTool.applyPending(new ArrayList<>(paperMap.values()));
+
+        List<SearchResultPaper> papers = new ArrayList<>(pids.size());
+        for (Long pid : pids) {
+            SearchResultPaper paper = paperMap.get(pid);
+            if (paper != null) {
+                papers.add(paper);
+            }
+        }
+        return papers;
+    }
+
+    /**
+     * 取当前页并组装返回：窗口内的页直接从缓存的结果窗口切片，游标翻页或超出窗口时查询ES；
+     * 新检索（第一页或没有会话）时把结果窗口连同检索条件保存为检索会话，命中超出窗口时筛选按检索条件查询ES
+     * @param session 检索类型、参数和排序方式，由调用方填好
+     */
+    private CustomResponse getPageResult(Query query, ESSearchPage window, SearchSession session,
+                                         Integer size, Integer offset, List<String> searchAfter, String sessionId) {
+        Integer sortType = session.getSortType();
+        Integer order = session.getOrder();
+        List<SearchResultPaper> windowPapers = window.getPapers();
+        int end = offset * size;
+        boolean useCursor = searchAfter != null && !searchAfter.isEmpty();
+        ESSearchPage page = null;
+        if (useCursor || (end > windowPapers.size() && window.getTotal() > windowPapers.size())) {
+            page = elasticSearchTool.searchPaperPage(query, sortType, order, size, offset, searchAfter);
+        }
+        if (page == null) {
+            int start = Math.min((offset - 1) * size, windowPapers.size());
+            List<SearchResultPaper> pagePapers = new ArrayList<>(windowPapers.subList(start, Math.min(end, windowPapers.size())));
+            // 翻到窗口末尾时返回游标，之后按 search_after 继续
+            List<String> cursor = end >= windowPapers.size() ? window.getCursor() : null;
+            page = new ESSearchPage(pagePapers, window.getTotal(), cursor, window.getOptions());
+        }
+        if (sessionId == null || sessionId.isBlank() || (offset == 1 && !useCursor)) {
+            session.setPapers(windowPapers);
+            session.setTotal(window.getTotal());
+            sessionId = saveSearchSession(sessionId, session);
+        }
 
-            SearchResultPaper searchResultPaper = new SearchResultPaper(
-                    Long.parseLong(paper.get("pid").toString()),
-                    paper.get("title") == null ? "" : paper.get("title").toString(),
-                    paper.get("keywords") == null ? "" : paper.get("keywords").toString(),
-                    paper.get("auths") == null ? "" : paper.get("auths").toString(),
-                    paper.get("category") == null ? "" : paper.get("category").toString(),
-                    paper.get("type") == null ? "" : paper.get("type").toString(),
-                    paper.get("theme") == null ? "" : paper.get("theme").toString(),
-                    date,
-                    paper.get("derivation") == null ? "" : paper.get("derivation").toString(),
-                    Integer.parseInt(paper.get("ref_times") == null ? "0" : paper.get("ref_times").toString()),
-                    Integer.parseInt(paper.get("fav_times") == null ? "0" : paper.get("fav_times").toString()),
-                    paper.get("content_url") == null ? "" : paper.get("content_url").toString());
-            searchResultPapers.add(searchResultPaper);
-        }
-
-        return searchResultPapers;
+        List<Long> pids = new ArrayList<>(page.getPapers().size());
+        Map<Long, Double> scores = new HashMap<>();
+        for (SearchResultPaper paper : page.getPapers()) {
+            pids.add(paper.getPid());
+            if (paper.getScore() != null) {
+                scores.put(paper.getPid(), paper.getScore());
+            }
+        }
+        // 行缓存不保存评分，按ES返回的综合评分补上
+        List<SearchResultPaper> papers = getSearchResultPapers(pids);
+        for (SearchResultPaper paper : papers) {
+            paper.setScore(scores.get(paper.getPid()));
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("result", papers); // 当前页搜索结果
+        result.put("options", window.getOptions()); // 年份、来源、类型、主题，由ES聚合得到
+        result.put("total", window.getTotal()); // 总数
+        result.put("cursor", page.getCursor()); // 下一页游标
+        result.put("sessionId", sessionId); // 检索会话
+        CustomResponse customResponse = new CustomResponse();
+        customResponse.setData(result);
+        return customResponse;
     }
 
     // 获取返回的结果：包括搜索结果 SearchResultPaper，过滤用的选项字段 option
     private CustomResponse getSearchResult(List<SearchResultPaper> papers, Integer sortType, Integer order,
-            Integer size, Integer offset) {
+            Integer size, Integer offset, List<String> keywords, String sessionId) {
         Map<String, Object> result = new HashMap<>();
         int total = papers.size();
+        sessionId = saveSearchSession(sessionId, new SearchSession(papers, (long) total, null, null, sortType, order));
 
         // 1. 根据搜索结果获取筛选字段的选择项
         Map<String, Map<String, Integer>> options = getOptions(papers);
 
-        // 2. searchbByOrder 对搜索结果进行排序：sortType
-        papers = searchByOrder(papers, sortType, order);
+        // 2. searchbByOrder 对搜索结果进行排序：sortType，按评分排序时只保留前 offset*size 名
+        papers = searchByOrder(papers, sortType, order, keywords, offset * size);
 
         // 3. searchByPage 对排序结果进行分页，并将当前页 offset 需要的内容返回
         papers = searchByPage(papers, size, offset);
@@ -311,179 +476,71 @@ public class PaperSearchServiceImpl implements PaperSearchService {
         result.put("result", papers); // 搜索结果
         result.put("options", options); // 年份、来源、类型、主题
         result.put("total", total); // 总数
+        result.put("sessionId", sessionId); // 检索会话
 
         customResponse.setData(result);
         return customResponse;
     }
 
-    // 获取筛选字段的选项
+    // 获取筛选字段的选项（ES 不可用时在内存中统计）
     Map<String, Map<String, Integer>> getOptions(List<SearchResultPaper> papers) {
-        Map<String, Integer> years = new LinkedHashMap<>();
-        Map<String, Integer> derivations = new LinkedHashMap<>();
-        Map<String, Integer> types = new LinkedHashMap<>();
-        Map<String, Integer> themes = new LinkedHashMap<>();
+        Map<String, Integer> years = new HashMap<>();
+        Map<String, Integer> derivations = new HashMap<>();
+        Map<String, Integer> types = new HashMap<>();
+        Map<String, Integer> themes = new HashMap<>();
 
         for (SearchResultPaper paper : papers) {
-            String year;
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss z yyyy", Locale.ENGLISH);
-            if (paper.getPublishDate().toString().contains(" ")) {
-                year = ZonedDateTime.parse(paper.getPublishDate().toString(), formatter).getYear() + "";
-            } else {
-                year = years.get(paper.getPublishDate().getYear()).toString();
-            }
-            // year
-            if (years.get(year) == null) {
-                years.put(year, 1);
-            } else {
-                years.put(year, years.get(year) + 1);
+            if (paper.getPublishDate() != null) {
+                String year = String.valueOf(paper.getPublishDate().toInstant().atZone(ZoneId.systemDefault()).getYear());
+                years.merge(year, 1, Integer::sum);
             }
-            // derivations
-            if (!paper.getDerivation().isEmpty()) {
-                if (derivations.get(paper.getDerivation()) == null) {
-                    derivations.put(paper.getDerivation(), 1);
-                } else {
-                    derivations.put(paper.getDerivation(), derivations.get(paper.getDerivation()) + 1);
-                }
+            if (paper.getDerivation() != null && !paper.getDerivation().isEmpty()) {
+                derivations.merge(paper.getDerivation(), 1, Integer::sum);
             }
-            // types
-            if (!paper.getType().isEmpty()) {
-                if (types.get(paper.getType()) == null) {
-                    types.put(paper.getType(), 1);
-                } else {
-                    types.put(paper.getType(), types.get(paper.getType()) + 1);
-                }
+            if (paper.getType() != null && !paper.getType().isEmpty()) {
+                types.merge(paper.getType(), 1, Integer::sum);
             }
-            // themes
-            if (!paper.getTheme().isEmpty()) {
-                if (themes.get(paper.getTheme()) == null) {
-                    themes.put(paper.getTheme(), 1);
-                } else {
-                    themes.put(paper.getTheme(), themes.get(paper.getTheme()) + 1);
-                }
+            if (paper.getTheme() != null && !paper.getTheme().isEmpty()) {
+                themes.merge(paper.getTheme(), 1, Integer::sum);
             }
         }
 
-        // 按值大到小进行排序
-        // 1. 将LinkedHashMap转换为List
-        List<Map.Entry<String, Integer>> yearsList = new ArrayList<>(years.entrySet());
-        List<Map.Entry<String, Integer>> derivationsList = new ArrayList<>(derivations.entrySet());
-        List<Map.Entry<String, Integer>> typesList = new ArrayList<>(types.entrySet());
-        List<Map.Entry<String, Integer>> themesList = new ArrayList<>(themes.entrySet());
-        // 2. 使用 Comparator 对 List 进行排序
-        yearsList.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
-        derivationsList.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
-        typesList.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
-        themesList.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
-
         Map<String, Map<String, Integer>> options = new HashMap<>();
-
-        years = new LinkedHashMap<>();
-        int num = 0;
-        for (Map.Entry<String, Integer> year : yearsList) {
-            years.put(year.getKey(), year.getValue());
-            num++;
-            if (num >= 10) {
-                break;
-            }
-        }
-        derivations = new LinkedHashMap<>();
-        num = 0;
-        for (Map.Entry<String, Integer> derivation : derivationsList) {
-            derivations.put(derivation.getKey(), derivation.getValue());
-            num++;
-            if (num >= 10) {
-                break;
-            }
-        }
-        types = new LinkedHashMap<>();
-        num = 0;
-        for (Map.Entry<String, Integer> type : typesList) {
-            types.put(type.getKey(), type.getValue());
-            num++;
-            if (num >= 10) {
-                break;
-            }
-        }
-        themes = new LinkedHashMap<>();
-        num = 0;
-        for (Map.Entry<String, Integer> theme : themesList) {
-            themes.put(theme.getKey(), theme.getValue());
-            num++;
-            if (num >= 10) {
-                break;
-            }
-        }
-
-        options.put("years", years);
-        options.put("derivations", derivations);
-        options.put("types", types);
-        options.put("themes", themes);
+        options.put("years", topOptions(years));
+        options.put("derivations", topOptions(derivations));
+        options.put("types", topOptions(types));
+        options.put("themes", topOptions(themes));
         return options;
     }
 
+    // 按数量从大到小保留前 10 个选项
+    private Map<String, Integer> topOptions(Map<String, Integer> counts) {
+        Map<String, Integer> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted((o1, o2) -> o2.getValue().compareTo(o1.getValue()))
+                .limit(10)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
     /**
-     * 模糊查询
+     * 模糊查询：ES 不可用时使用 MySQL 全文索引
      * 
      * @param keyword 搜索内容
      * @return 文献信息
      */
-    List<Map<String, Object>> searchByKeyword(String condition, String keyword, Integer size, Integer offset) {
-        List<Paper> list = null;
-        /*try {
-            if (checkIndexExists("paper")) {
-                Query query;
-                query = Query.of(q -> q.bool(b -> {
-                    b.must(m -> m.match(ma -> ma.field(condition).query(keyword)));
-                    b.must(m -> m.match(ma -> ma.field("stats").query(0)));
-                    return b;
-                }));
-                SearchRequest searchRequest = new SearchRequest.Builder().index("paper").query(query).build();
-                SearchResponse<Paper> searchResponse = client.search(searchRequest, Paper.class);
-                list = new ArrayList<>();
-                for (Hit<Paper> hit : searchResponse.hits().hits()) {
-                    if (hit.source() != null) {
-                        list.add(hit.source());
-                    }
-                }
-            }
-        } catch (IOException e) {
-            log.error("查询ES相关文献文档时出错了：" + e);
-        }*/
-        list = elasticSearchTool.searchPapersByCondition(condition,keyword,null,size*offset,true);
-        //System.out.println("查询es" + list);
-        List<Map<String, Object>> paperList;
-        if (list == null || list.isEmpty()) {
-            String cond = "";
-            if (condition.equals("auths")) {
-                cond = "str_auths";
-                paperList = paperMapper.searchByKeywordWithStrictBooleanMode(cond, keyword);
-            } else if (condition.equals("keywords")) {
-                cond = "str_keywords";
-                paperList = paperMapper.searchByKeywordWithBooleanMode(cond, keyword);
-            } else {
-                cond = condition;
-                paperList = paperMapper.searchByKeyword(cond, keyword);
-            }
+    List<SearchResultPaper> searchByKeyword(String condition, String keyword) {
+        List<SearchResultPaper> paperList;
+        String cond = "";
+        if (condition.equals("auths")) {
+            cond = "str_auths";
+            paperList = paperMapper.searchByKeywordWithStrictBooleanMode(cond, keyword);
+        } else if (condition.equals("keywords")) {
+            cond = "str_keywords";
+            paperList = paperMapper.searchByKeywordWithBooleanMode(cond, keyword);
         } else {
-            paperList = list.parallelStream()
-                    .map(paper -> {
-                        /*
-                        Map<String, Object> paperMap = new HashMap<>();
-                        paperMap.put("pid", detailedPaper.getPid());
-                        paperMap.put("title", detailedPaper.getTitle());
-                        paperMap.put("keywords", detailedPaper.getKeywords());
-                        paperMap.put("auths", detailedPaper.getAuths());
-                        paperMap.put("field", detailedPaper.getCategory());
-                        paperMap.put("type", detailedPaper.getType());
-                        paperMap.put("theme", detailedPaper.getTheme());
-                        paperMap.put("publish_date", detailedPaper.getPublishDate());
-                        paperMap.put("derivation", detailedPaper.getDerivation());
-                        paperMap.put("ref_times", detailedPaper.getRefTimes());
-                        paperMap.put("fav_time", detailedPaper.getFavTimes());*/
-
-                        return paperMapper.getPaperByPid(paper.getPid());
-                    })
-                    .collect(Collectors.toList());
+            cond = condition;
+            paperList = paperMapper.searchByKeyword(cond, keyword);
         }
         return paperList;
     }
@@ -573,63 +630,85 @@ public class PaperSearchServiceImpl implements PaperSearchService {
      * @param keyWords 关键词
      *                 <p>
      *                 以提供检索契合度评分
+     * @param limit    按评分排序时需要的条数，每篇只评分一次，只保留前 limit 名
      * @return
      */
     List<SearchResultPaper> searchByOrder(List<SearchResultPaper> papers, Integer sortType, Integer order,
-            List<String> keyWords) {
-        if (sortType != 4) {
-            papers = searchByOrder(papers, sortType, order);
-        } else {
-            Map<SearchResultPaper, Double> paperScore = new HashMap<>();
-            papers.sort((p1, p2) -> {
-                double s1 = paperScore.computeIfAbsent(p1, p -> PaperSortScorer.calculateScore(p1, keyWords));
-                double s2 = paperScore.computeIfAbsent(p2, p -> PaperSortScorer.calculateScore(p2, keyWords));
-                if (order == 0) {
-                    return Double.compare(s2, s1);
-                } else {
-                    return Double.compare(s1, s2);
-                }
-            });
+            List<String> keyWords, int limit) {
+        if (sortType == null || sortType != 4) {
+            return searchByOrder(papers, sortType, order);
         }
-        return papers;
+        return PaperSortScorer.topK(papers, keyWords, limit, order, paperRankConfig);
     }
 
     /*
      * ========== 缓存操作 ==========
      */
 
-    // 将查询结果存到 redis 中
-    public void saveToRedis(List<SearchResultPaper> searchResultPapers) {
-        for (SearchResultPaper paper : searchResultPapers) {
-            CompletableFuture.runAsync(() -> {
-                redisTool.setExObjectValue("paper" + paper.getPid(), paper); // 异步更新到redis
-            }, taskExecutor);
+    /**
+     * 保存检索会话：结果集只保存pid以及筛选、排序用到的字段，整个会话存为一个键。
+     * 会话保存后不再修改，新的检索总是生成新的会话id，并删除旧的会话
+     * @param oldSessionId 旧的会话id，可以为空
+     * @param session      检索结果和检索条件
+     * @return 新的会话id
+     */
+    public String saveSearchSession(String oldSessionId, SearchSession session) {
+        if (oldSessionId != null && !oldSessionId.isBlank()) {
+            redisTool.deleteKey(SEARCH_SESSION_PREFIX + oldSessionId);
+        }
+        String sessionId = UUID.randomUUID().toString().replace("-", "");
+        List<SearchResultPaper> digests = new ArrayList<>(session.getPapers().size());
+        for (SearchResultPaper paper : session.getPapers()) {
+            digests.add(paper.toDigest());
         }
+        SearchSession saved = new SearchSession(digests, session.getTotal(), session.getSearchType(),
+                session.getSearchParams(), session.getSortType(), session.getOrder());
+        redisTool.setExObjectValue(SEARCH_SESSION_PREFIX + sessionId, saved, searchSessionTtl, TimeUnit.SECONDS);
+        return sessionId;
     }
 
-    // 从 redis 中获取暂存信息
-    public List<SearchResultPaper> getFromRedis() {
-        List<SearchResultPaper> papers = new ArrayList<>();
-        Set<String> keySet = redisTool.getKeysByPrefix("paper");
-
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
+    /**
+     * 读取检索会话，一次 redis 读取；每次访问都会续期，长期不用的会话按 TTL 过期
+     * @param sessionId 会话id
+     * @return 会话，不存在或已过期时返回null
+     */
+    public SearchSession getSearchSession(String sessionId) {
+        if (sessionId == null || sessionId.isBlank()) {
+            return null;
+        }
+        String key = SEARCH_SESSION_PREFIX + sessionId;
+        String value = redisTool.getObjectString(key);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        redisTool.setExpire(key, searchSessionTtl);
+        if (value.startsWith("[")) {
+            // 之前的会话只保存了结果集
+            List<SearchResultPaper> papers = JSON.parseArray(value, SearchResultPaper.class);
+            return new SearchSession(papers, (long) papers.size(), null, null, null, null);
+        }
+        return JSON.parseObject(value, SearchSession.class);
+    }
 
-        for (String key : keySet) {
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {// 异步执行任务
-                SearchResultPaper paper = redisTool.getObjectByClass(key, SearchResultPaper.class);
-                synchronized (papers) { // 确保线程安全
-                    papers.add(paper);
-                }
-            }, taskExecutor);
-            futures.add(future);
+    /**
+     * 按会话保存的检索条件重新构造 ES 查询
+     * @return 查询，MySQL 回退得到的会话返回null
+     */
+    public Query getSessionQuery(SearchSession session) {
+        List<String> params = session.getSearchParams();
+        if (KEYWORD_SEARCH.equals(session.getSearchType())) {
+            return elasticSearchTool.buildConditionQuery(params.get(0), params.get(1));
         }
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        return papers;
+        if (ADVANCED_SEARCH.equals(session.getSearchType())) {
+            return elasticSearchTool.buildAdvancedQuery(params.get(0).split(","), params.get(1).split(","),
+                    params.get(2).split(","));
+        }
+        return null;
     }
 
-    // 删除 redis 中的信息
-    public void deleteFromRedis() {
-        redisTool.deleteByPrefix("paper");
+    // 检索会话续期
+    public void touchSearchSession(String sessionId) {
+        redisTool.setExpire(SEARCH_SESSION_PREFIX + sessionId, searchSessionTtl);
     }
 
     boolean checkIndexExists(String indexName) {
@@ -7,15 +7,20 @@ import com.buaa01.illumineer_backend.entity.Paper;
 import com.buaa01.illumineer_backend.entity.SearchResultPaper;
 import com.buaa01.illumineer_backend.entity.User;
 import com.buaa01.illumineer_backend.mapper.PaperMapper;
+import com.buaa01.illumineer_backend.mapper.PaperOutboxMapper;
 import com.buaa01.illumineer_backend.service.client.UserClientService;
 import com.buaa01.illumineer_backend.service.paper.PaperService;
 import com.buaa01.illumineer_backend.tool.OssTool;
+import com.buaa01.illumineer_backend.tool.PaperBatchTool;
+import com.buaa01.illumineer_backend.tool.PaperCounterTool;
+import com.buaa01.illumineer_backend.tool.PaperDetailCache;
 import com.buaa01.illumineer_backend.tool.RedisTool;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -32,11 +37,19 @@ public class PaperServiceImpl implements PaperService {
     @Autowired
     private PaperMapper paperMapper;
     @Autowired
+    private PaperOutboxMapper paperOutboxMapper;
+    @Autowired
+    private PaperCounterTool paperCounterTool;
+    @Autowired
+    private PaperDetailCache paperDetailCache;
+    @Autowired
     private RedisTool redisTool;
     @Autowired
     private UserClientService userClientService;
     @Autowired
     private OssTool ossTool;
+    @Autowired
+    private PaperBatchTool paperBatchTool;
 
 
     /**
@@ -47,20 +60,19 @@ public class PaperServiceImpl implements PaperService {
         CustomResponse customResponse = new CustomResponse();
         List<Long> pids = paperMapper.getRecommend(num);
         List<Map<String, Object>> papers = new ArrayList<>();
-        for (Long pid : pids) {
-            Map<String, Object> searchPaper = paperMapper.getPaperByPid(pid);
+        for (Map<String, Object> searchPaper : paperBatchTool.getPapersByPids(pids)) {
             Map<String, Object> paper = new HashMap<>();
             paper.put("pid", searchPaper.get("pid"));
             paper.put("title", searchPaper.get("title"));
             paper.put("keywords", searchPaper.get("keywords"));
             paper.put("auths", searchPaper.get("auths"));
             paper.put("derivation", searchPaper.get("derivation"));
-            paper.put("publishDate", searchPaper.get("publishDate"));
-            paper.put("refTimes", searchPaper.get("refTimes"));
-            paper.put("favTimes", searchPaper.get("favTimes"));
+            paper.put("publishDate", searchPaper.get("publish_date"));
+            paper.put("refTimes", searchPaper.get("ref_times"));
+            paper.put("favTimes", searchPaper.get("fav_times"));
             paper.put("type", searchPaper.get("type"));
             paper.put("theme", searchPaper.get("theme"));
-            paper.put("contentUrl", searchPaper.get("contentUrl"));
+            paper.put("contentUrl", searchPaper.get("content_url"));
             paper.put("category", searchPaper.get("category"));
             paper.put("essAbs", searchPaper.get("ess_abs"));
             papers.add(paper);
@@ -92,11 +104,8 @@ public class PaperServiceImpl implements PaperService {
      */
     public CustomResponse addRefTimes(Long pid) {
         CustomResponse customResponse = new CustomResponse();
-        UpdateWrapper<Paper> updateWrapper = new UpdateWrapper<>();
-        updateWrapper.eq("pid", pid);
-        updateWrapper.setSql("ref_times = ref_times + 1");
-
-        paperMapper.update(null, updateWrapper);
+        // 先计入 Redis，定时批量写库
+        paperCounterTool.increment(pid, PaperOutboxMapper.REF_TIMES);
 
         customResponse.setMessage("增加引用量成功！");
         return customResponse;
@@ -109,11 +118,8 @@ public class PaperServiceImpl implements PaperService {
      */
     public CustomResponse addFavTimes(Long pid) {
         CustomResponse customResponse = new CustomResponse();
-        UpdateWrapper<Paper> updateWrapper = new UpdateWrapper<>();
-        updateWrapper.eq("pid", pid);
-        updateWrapper.setSql("fav_times = fav_times + 1");
-
-        paperMapper.update(null, updateWrapper);
+        // 先计入 Redis，定时批量写库
+        paperCounterTool.increment(pid, PaperOutboxMapper.FAV_TIMES);
 
         customResponse.setMessage("增加收藏量成功！");
         return customResponse;
@@ -125,6 +131,7 @@ public class PaperServiceImpl implements PaperService {
      * @param paper   文章
      * @param content 文章内容（文件）
      */
+    @Transactional
     public CustomResponse uploadPaper(Paper paper, MultipartFile content, Integer uid) {
         CustomResponse customResponse = new CustomResponse();
 
@@ -158,6 +165,7 @@ public class PaperServiceImpl implements PaperService {
             paperMapper.insertPaper(paper.getPid(), paper.getTitle(), paper.getEssAbs(), paper.getKeywords().toString(), paper.getContentUrl(), paper.getAuths().toString().replace("=", ":"), paper.getCategory(), paper.getType(), paper.getTheme(), paper.getPublishDate(), paper.getDerivation(), paper.getRefs().toString(), paper.getFavTimes(), paper.getRefTimes(), paper.getStats());
             searchPaper = paperMapper.selectList(queryWrapper);
             Paper newPaper = searchPaper.get(0);
+            paperOutboxMapper.insert(newPaper.getPid(), null);
             //在redis将pid与用户绑定
             redisTool.addSetMember("property:" + uid, newPaper.getPid());
             redisTool.addSetMember("paperBelonged:" + newPaper.getPid(), uid);
@@ -176,6 +184,7 @@ public class PaperServiceImpl implements PaperService {
      * @param
      * @return
      */
+    @Transactional
     public CustomResponse updatePaper(Long pid,
                                       String title,
                                       String essabs,
@@ -217,6 +226,8 @@ public class PaperServiceImpl implements PaperService {
             updateWrapper.setSql("title = '" + title + "', ess_abs = '" + essabs + "', keywords = '" + keywords.toString() + "', content_url = '" + contentUrl + "', auths = '" + auths.toString().replace("=", ":") + "', category = '" + field + "', type = '" + type + "', theme = '" + theme + "', publish_date = '" + publishDate + "', derivation = '" + derivation + "', refs = '" + refs.toString() + "'");
 
             paperMapper.update(null, updateWrapper);
+            paperOutboxMapper.insert(pid, null);
+            paperDetailCache.invalidate(pid);
 
             customResponse.setMessage("文章更新成功！");
         } else {
@@ -301,6 +312,7 @@ public class PaperServiceImpl implements PaperService {
     }
 
     @Override
+    @Transactional
     public CustomResponse modifyAuth(Long pid, String name, Integer uid) {
         // 创建更新条件
         UpdateWrapper<Paper> updateWrapper = new UpdateWrapper<>();
@@ -326,6 +338,8 @@ public class PaperServiceImpl implements PaperService {
             int rowsAffected = paperMapper.updatePaper(pid, paper);  // 假设你有一个方法可以更新数据库中的文章
 
             if (rowsAffected > 0) {
+                paperOutboxMapper.insert(pid, null);
+                paperDetailCache.invalidate(pid);
                 return new CustomResponse(200, "修改文章作者信息成功", null);
             } else {
                 return new CustomResponse(500, "修改失败", null);
@@ -4,10 +4,13 @@ import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.buaa01.illumineer_backend.entity.CustomResponse;
 import com.buaa01.illumineer_backend.entity.Paper;
 import com.buaa01.illumineer_backend.mapper.PaperMapper;
+import com.buaa01.illumineer_backend.mapper.PaperOutboxMapper;
 import com.buaa01.illumineer_backend.service.paper.PaperStatsService;
+import com.buaa01.illumineer_backend.tool.PaperDetailCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Slf4j
 @Service
@@ -15,6 +18,10 @@ public class PaperStatsServiceImpl implements PaperStatsService {
 
     @Autowired
     private PaperMapper paperMapper;
+    @Autowired
+    private PaperOutboxMapper paperOutboxMapper;
+    @Autowired
+    private PaperDetailCache paperDetailCache;
 
     /**
      * @description: 更新文章状态（0 正常 1 已删除 2 待审核）
@@ -28,6 +35,7 @@ public class PaperStatsServiceImpl implements PaperStatsService {
      * @return: 是否成功更新文章状态
      **/
     @Override
+    @Transactional
     public CustomResponse updateStats(Long pid, Integer stats) {
         CustomResponse customResponse = new CustomResponse();
         UpdateWrapper<Paper> updateWrapper = new UpdateWrapper<>();
@@ -35,6 +43,8 @@ public class PaperStatsServiceImpl implements PaperStatsService {
         updateWrapper.setSql("stats = " + stats);
 
         paperMapper.update(null, updateWrapper);
+        paperOutboxMapper.insert(pid, PaperOutboxMapper.STATS);
+        paperDetailCache.invalidate(pid);
 
         customResponse.setMessage("更新文章状态成功！");
         return customResponse;
@@ -3,7 +3,9 @@ package com.buaa01.illumineer_backend.service.impl.paper;
 import com.buaa01.illumineer_backend.entity.Paper;
 import com.buaa01.illumineer_backend.mapper.StormMapper;
 import com.buaa01.illumineer_backend.service.StormService;
-import com.buaa01.illumineer_backend.tool.StormTool;
+import com.buaa01.illumineer_backend.tool.StormBulkLoader;
+import com.buaa01.illumineer_backend.tool.StormCoordinator;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -15,25 +17,40 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.concurrent.CompletableFuture;
 
+@Slf4j
 @Service
 public class StormServiceImpl implements StormService {
     @Autowired
     private StormMapper stormMapper;
     @Autowired
-    private StormTool storm;
+    private StormCoordinator stormCoordinator;
+    @Autowired
+    private StormBulkLoader stormBulkLoader;
 
     @Async
     @Override
     public CompletableFuture<String> getStorm() throws URISyntaxException, IOException, ParserConfigurationException, SAXException {
         int articles = 0;
-        String last_update = "2024-11-25";
-        String isNew = storm.check();
-        if (!isNew.equals(last_update)) {
-            last_update = isNew;
-            articles = storm.getPapers(last_update);
+        try {
+            // 各副本同时触发，由协调器选出主节点并分发 part 文件
+            articles = stormCoordinator.run();
+        } catch (Exception e) {
+            log.error("OpenAlex 增量导入出错", e);
         }
 //        for (Paper article : articles)
 //            stormMapper.insertPaper(article.getPid(), article.getTitle(), article.getEssAbs(), article.getKeywords(), article.getContentUrl(), article.getAuths(), article.getCategory(), article.getType(), article.getTheme(), article.getPublishDate(), article.getDerivation(), article.getRefs(), article.getRefTimes(), article.getRefTimes(), article.getStats());
         return CompletableFuture.completedFuture(String.valueOf(articles));
     }
-}
\ No newline at end of file
+
+    @Async
+    @Override
+    public CompletableFuture<String> bulkLoad(String dir) {
+        int articles = 0;
+        try {
+            articles = stormBulkLoader.load(dir);
+        } catch (Exception e) {
+            log.error("批量导入 {} 出错", dir, e);
+        }
+        return CompletableFuture.completedFuture(String.valueOf(articles));
+    }
+}
@@ -8,15 +8,17 @@ import com.buaa01.illumineer_backend.utils.FilterCondition;
 
 public interface PaperFilterService {
     /**
-     * 根据筛选条件对模糊搜索到的List进行筛选
+     * 根据筛选条件对检索会话中保存的结果集进行筛选
      * 
+     * @param sessionId                  检索接口返回的会话id
      * @param ArrayList<FilterCondition> 筛选条件列表
      * @param sortType                   排序依据
      *                                   1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数
      * @param order                      0=降序，1=升序
      * 
-     * @return List<SearchResultPaper>
+     * 会话只保存了前 search.cache.window 条时按会话的检索条件在 ES 中筛选，覆盖全部命中结果
+     * @return resultPapers、total、options，以及 limit（筛选结果最多能翻到的条数），会话不存在或已过期时返回null
      */
-    Map<String, Object> filterSearchResult(Map<String, Object> sc, Integer size, Integer offset, Integer sortType,
-            Integer order);
+    Map<String, Object> filterSearchResult(String sessionId, Map<String, Object> sc, Integer size, Integer offset,
+            Integer sortType, Integer order);
 }
@@ -14,5 +14,9 @@ public interface PaperSearchService {
 
     CustomResponse searchPapers(String condition, String keyword, Integer size, Integer offset, Integer sortType, Integer order);
 
+    CustomResponse searchPapers(String condition, String keyword, Integer size, Integer offset, Integer sortType, Integer order, List<String> searchAfter, String sessionId);
+
     CustomResponse advancedSearchPapers(String logic, String condition, String keyword, Integer size, Integer offset, Integer sortType, Integer order);
+
+    CustomResponse advancedSearchPapers(String logic, String condition, String keyword, Integer size, Integer offset, Integer sortType, Integer order, List<String> searchAfter, String sessionId);
 }
@@ -1,18 +1,37 @@
 package com.buaa01.illumineer_backend.tool;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CalendarInterval;
+import co.elastic.clients.elasticsearch._types.aggregations.DateHistogramBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
 import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMappingException;
+import com.buaa01.illumineer_backend.config.PaperRankConfig;
+import com.buaa01.illumineer_backend.entity.ES.ESSearchPage;
+import com.buaa01.illumineer_backend.entity.ES.PaperDocument;
 import com.buaa01.illumineer_backend.entity.ElasticSearchPaper;
 import com.buaa01.illumineer_backend.entity.ElasticSearchWord;
 import com.buaa01.illumineer_backend.entity.Paper;
 import com.buaa01.illumineer_backend.entity.SearchResultPaper;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.buaa01.illumineer_backend.utils.FilterCondition;
+import com.buaa01.illumineer_backend.utils.PaperCodec;
+import com.buaa01.illumineer_backend.utils.SearchFacetIndex;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -26,14 +45,58 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class ElasticSearchTool {
+    /** 论文检索使用的索引别名 */
+    private static final String PAPER_INDEX = PaperIndexTool.READ_ALIAS;
+    /** 检索结果中需要返回的字段：pid以及筛选、排序用到的字段 */
+    private static final List<String> PAPER_DIGEST_FIELDS =
+            List.of("pid", "keywords", "type", "theme", "publishDate", "derivation", "refTimes", "favTimes");
+    /** 每个筛选项最多返回的选项数 */
+    private static final int OPTION_SIZE = 10;
+    /** 筛选项名称、返回给前端的 options 名称和聚合的字段 */
+    private static final String[][] FACETS = {
+            {SearchFacetIndex.YEAR, "years", "publishDate"},
+            {SearchFacetIndex.DERIVATION, "derivations", "derivation.keyword"},
+            {SearchFacetIndex.TYPE, "types", "type.keyword"},
+            {SearchFacetIndex.THEME, "themes", "theme.keyword"}
+    };
+    /** 筛选时各筛选项 filter 聚合下的子聚合名 */
+    private static final String FACET_OPTIONS = "options";
+    /** 分页查询最多能取到的条数，即 ES 的 index.max_result_window 默认值 */
+    public static final int MAX_RESULT_WINDOW = 10000;
+    /**
+     * 综合评分脚本：BM25 饱和后与引用次数、收藏次数、出版时间衰减加权求和；
+     * 除文本相关度外与 PaperSortScorer 的公式相同，出版时间都按含小数的年数连续衰减
+     */
+    private static final String RANK_SCRIPT =
+            "double text = _score / (_score + params.textSaturation);"
+            + "double ref = doc['refTimes'].size() == 0 ? 0 : doc['refTimes'].value / params.refScale;"
+            + "double fav = doc['favTimes'].size() == 0 ? 0 : doc['favTimes'].value / params.favScale;"
+            + "double time = 0;"
+            + "if (doc['publishDate'].size() != 0) {"
+            + "  long millis = doc['publishDate'].value.toInstant().toEpochMilli();"
+            + "  double years = Math.max(0, params.now - millis) / 31556952000.0;"
+            + "  time = Math.exp(-params.timeDecay * years);"
+            + "}"
+            + "return params.refWeight * ref + params.favWeight * fav + params.timeWeight * time"
+            + " + params.textWeight * text;";
+    /** 一天的毫秒数，脚本中的当前时间按天取整，便于ES缓存 */
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
     @Autowired
     private ElasticsearchClient elasticsearchClient;
 
+    @Autowired
+    private PaperRankConfig paperRankConfig;
+
+    @Autowired
+    private PaperIndexTool paperIndexTool;
+
     /**
      * 将关键词word添加入es中
      * 每次调用将创建一个新的文档，这些文档的索引是"search_word"，但是id不同(默认处理)
@@ -49,47 +112,29 @@ public class ElasticSearchTool {
     }
 
     /**
-     * 将paper添加入es中
+     * 将paper添加入es中，重建索引期间同时写入新索引
      * @param paper 论文
      */
     public void addPaper(Paper paper) {
-        try{
-            ObjectMapper objectMapper = new ObjectMapper();
-            Date date;
-            // 判断是否是 ISO 格式，转换date格式
-            if (!paper.getPublishDate().toString().contains(" ")) {
-                date = Date.from(
-                        LocalDateTime.parse(paper.getPublishDate().toString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                                .atZone(ZoneId.systemDefault()).toInstant());
-            } else {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss z yyyy", Locale.ENGLISH);
-                date = Date.from(LocalDateTime.parse(paper.getPublishDate().toString(), formatter)
-                        .atZone(ZoneId.systemDefault()).toInstant());
-            }
-
-            SearchResultPaper searchResultPaper = new SearchResultPaper(
-                    paper.getPid(),
-                    paper.getTitle() == null ? "" : paper.getTitle(),
-                    paper.getKeywords() == null ? "" : paper.getKeywords().toString(),
-                    paper.getAuths() == null ? "" : paper.getAuths().toString(),
-                    paper.getCategory() == null ? "" : paper.getCategory(),
-                    paper.getType() == null ? "" : paper.getType(),
-                    paper.getTheme() == null ? "" : paper.getTheme(),
-                    date,
-                    paper.getDerivation() == null ? "" : paper.getDerivation(),
-                    paper.getRefTimes(),
-                    paper.getFavTimes(),
-                    paper.getContentUrl());
-            elasticsearchClient.index(
-                    i -> i.index("search_result_paper").id(paper.getPid().toString()).document(searchResultPaper));
-        }catch (IOException e){
-            log.error("添加论文至ElasticSearch出错：{}", e.getMessage());
+        Date date;
+        // 判断是否是 ISO 格式，转换date格式
+        if (!paper.getPublishDate().toString().contains(" ")) {
+            date = Date.from(
+                    LocalDateTime.parse(paper.getPublishDate().toString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                            .atZone(ZoneId.systemDefault()).toInstant());
+        } else {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss z yyyy", Locale.ENGLISH);
+            date = Date.from(LocalDateTime.parse(paper.getPublishDate().toString(), formatter)
+                    .atZone(ZoneId.systemDefault()).toInstant());
         }
+        PaperDocument document = PaperDocument.of(paper, date);
+        writeToTargets("添加论文至ElasticSearch", index -> elasticsearchClient.index(i -> i.index(index)
+                .id(paper.getPid().toString()).document(document).requireAlias(isBuilding(index))));
     }
 
     public boolean isExistPaper(Long pid){
         try{
-            return elasticsearchClient.exists(e -> e.index("paper").id(pid.toString())).value();
+            return elasticsearchClient.exists(e -> e.index(PAPER_INDEX).id(pid.toString())).value();
         }catch (IOException e){
             log.error("查询paper是否存在出错：{}", e.getMessage());
             return false;
@@ -97,48 +142,240 @@ public class ElasticSearchTool {
     }
 
     /**
-     * 删除论文
+     * 删除论文，重建索引期间同时从新索引删除
      * @param pid
      */
     public void deletePaper(Long pid) {
-        try{
-            elasticsearchClient.delete(i->i.index("paper").id(pid.toString()));
-        }catch (IOException e){
-            log.error("删除论文至ElasticSearch出错：{}", e.getMessage());
-        }
+        paperIndexTool.recordDeletes(Collections.singleton(pid));
+        writeToTargets("从ElasticSearch删除论文",
+                index -> elasticsearchClient.delete(i -> i.index(index).id(pid.toString())));
     }
 
+    /**
+     * 更新论文，重建索引期间同时更新新索引；新索引中还没有这篇论文时直接写入
+     * @param paper 论文
+     */
     public void updatePaper(Paper paper) {
-        try{
-            Date date;
-            // 判断是否是 ISO 格式，转换date格式
-            if (!paper.getPublishDate().toString().contains(" ")) {
-                date = Date.from(
-                        LocalDateTime.parse(paper.getPublishDate().toString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                                .atZone(ZoneId.systemDefault()).toInstant());
-            } else {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss z yyyy", Locale.ENGLISH);
-                date = Date.from(LocalDateTime.parse(paper.getPublishDate().toString(), formatter)
-                        .atZone(ZoneId.systemDefault()).toInstant());
+        Date date;
+        // 判断是否是 ISO 格式，转换date格式
+        if (!paper.getPublishDate().toString().contains(" ")) {
+            date = Date.from(
+                    LocalDateTime.parse(paper.getPublishDate().toString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                            .atZone(ZoneId.systemDefault()).toInstant());
+        } else {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss z yyyy", Locale.ENGLISH);
+            date = Date.from(LocalDateTime.parse(paper.getPublishDate().toString(), formatter)
+                    .atZone(ZoneId.systemDefault()).toInstant());
+        }
+        PaperDocument document = PaperDocument.of(paper, date);
+        writeToTargets("更新论文至ElasticSearch", index -> elasticsearchClient.update(i -> i.index(index)
+                .id(paper.getPid().toString()).doc(document)
+                .docAsUpsert(isBuilding(index)).requireAlias(isBuilding(index)), ElasticSearchPaper.class));
+    }
+
+    /**
+     * 批量新建论文文档，重建索引期间同时写入新索引；已存在的文档保持不变，用于离线导入时跳过库中已有的论文
+     * @param papers 论文
+     * @return 写入成功或已存在的条数
+     */
+    public int bulkCreatePapers(List<Paper> papers) {
+        if (papers.isEmpty()) {
+            return 0;
+        }
+        Set<String> failed = bulkToTargets((bulk, index) -> {
+            for (Paper paper : papers) {
+                PaperDocument document = PaperDocument.of(paper, paper.getPublishDate());
+                bulk.operations(op -> op.create(c -> c.index(index).id(paper.getPid().toString())
+                        .document(document).requireAlias(isBuilding(index))));
             }
+        }, true);
+        return failed == null ? 0 : papers.size() - failed.size();
+    }
 
-            SearchResultPaper searchResultPaper = new SearchResultPaper(
-                    paper.getPid(),
-                    paper.getTitle() == null ? "" : paper.getTitle(),
-                    paper.getKeywords() == null ? "" : paper.getKeywords().toString(),
-                    paper.getAuths() == null ? "" : paper.getAuths().toString(),
-                    paper.getCategory() == null ? "" : paper.getCategory(),
-                    paper.getType() == null ? "" : paper.getType(),
-                    paper.getTheme() == null ? "" : paper.getTheme(),
-                    date,
-                    paper.getDerivation() == null ? "" : paper.getDerivation(),
-                    paper.getRefTimes(),
-                    paper.getFavTimes(),
-                    paper.getContentUrl());
-            elasticsearchClient.update(i->i.index("paper").id(paper.getPid().toString()).doc(searchResultPaper),ElasticSearchPaper.class);
-        }catch (IOException e){
-            log.error("更新论文至ElasticSearch出错：{}", e.getMessage());
+    /**
+     * 重建索引时批量写入新索引：只新建文档，已经由实时写入写过的论文保留实时写入的版本
+     * @param index 新索引的名字
+     * @param papers 论文
+     * @return 写入成功或已存在的条数
+     */
+    public int bulkCreatePapers(String index, List<Paper> papers) {
+        if (papers.isEmpty()) {
+            return 0;
+        }
+        BulkRequest.Builder bulk = new BulkRequest.Builder();
+        for (Paper paper : papers) {
+            PaperDocument document = PaperDocument.of(paper, paper.getPublishDate());
+            bulk.operations(op -> op.create(
+                    c -> c.index(index).id(paper.getPid().toString()).document(document)));
+        }
+        return bulk(bulk.build(), papers.size(), true);
+    }
+
+    /**
+     * 把 MySQL 中的变更同步到 ES，重建索引期间同时写入新索引：
+     * 只变更了计数的论文只更新这几个字段，索引中还没有时写入整篇；其余论文整篇覆盖；已删除的论文从索引中删除
+     * @param papers 变更后仍应在索引中的论文
+     * @param partial 只变更了部分字段的论文，pid → ES 字段及新值
+     * @param deleted 应从索引删除的论文
+     * @return 写入失败的论文，调用方应保留这些变更稍后重试
+     */
+    public Set<Long> syncPapers(Collection<Paper> papers, Map<Long, Map<String, Object>> partial,
+                                Collection<Long> deleted) {
+        if (papers.isEmpty() && deleted.isEmpty()) {
+            return Collections.emptySet();
+        }
+        paperIndexTool.recordDeletes(deleted);
+        Set<String> failed = bulkToTargets((bulk, index) -> {
+            boolean requireAlias = isBuilding(index);
+            for (Paper paper : papers) {
+                String id = paper.getPid().toString();
+                PaperDocument document = PaperDocument.of(paper, paper.getPublishDate());
+                Map<String, Object> fields = partial.get(paper.getPid());
+                if (fields == null) {
+                    bulk.operations(op -> op.index(i -> i.index(index).id(id).document(document)
+                            .requireAlias(requireAlias)));
+                } else {
+                    bulk.operations(op -> op.update(u -> u.index(index).id(id).requireAlias(requireAlias)
+                            .action(a -> a.doc(fields).upsert(document))));
+                }
+            }
+            for (Long pid : deleted) {
+                bulk.operations(op -> op.delete(d -> d.index(index).id(pid.toString())));
+            }
+        }, false);
+        if (failed == null) {
+            Set<Long> all = new HashSet<>(deleted);
+            papers.forEach(paper -> all.add(paper.getPid()));
+            return all;
         }
+        return failed.stream().map(Long::valueOf).collect(Collectors.toSet());
+    }
+
+    /**
+     * 从指定索引中删除论文，用于重建完成、切换之前再删除一次重建期间删除的论文
+     * @param index 索引名
+     * @param pids 论文 pid
+     * @return 是否全部删除成功，文档本来不存在也算成功
+     */
+    public boolean deletePapers(String index, Collection<Long> pids) {
+        if (pids.isEmpty()) {
+            return true;
+        }
+        BulkRequest.Builder bulk = new BulkRequest.Builder();
+        for (Long pid : pids) {
+            bulk.operations(op -> op.delete(d -> d.index(index).id(pid.toString())));
+        }
+        Set<String> failed = bulkFailures(bulk.build(), false);
+        return failed != null && failed.isEmpty();
+    }
+
+    /** 向一个写入目标发出的单条写入 */
+    private interface TargetWrite {
+        void write(String index) throws IOException;
+    }
+
+    /**
+     * 写入 paper_building 时都带上 requireAlias：重建切换后它已不是别名，写入会失败，而不是自动新建一个同名的索引。
+     * 删除不会自动建索引，不需要这个参数。
+     * 各副本缓存的写入目标在切换后几秒内仍有 paper_building，写入失败时重新读取写入目标，按新的目标再写一次
+     */
+    private static boolean isBuilding(String index) {
+        return PaperIndexTool.BUILDING_ALIAS.equals(index);
+    }
+
+    private static boolean isBuildingGone(String index, String errorType) {
+        return isBuilding(index) && "index_not_found_exception".equals(errorType);
+    }
+
+    // 依次写入各写入目标，出错时记录日志
+    private void writeToTargets(String action, TargetWrite write) {
+        for (String index : paperIndexTool.getWriteTargets()) {
+            try {
+                write.write(index);
+            } catch (ElasticsearchException e) {
+                if (!isBuildingGone(index, e.error().type())) {
+                    throw e;
+                }
+                // 之前写入 paper_write 时可能还在切换前，写到了旧索引，按新的写入目标重写
+                List<String> targets = paperIndexTool.refreshWriteTargets();
+                log.info("论文索引已切换，按新的写入目标 {} 重新写入", targets);
+                for (String target : targets) {
+                    writeTo(action, write, target);
+                }
+                return;
+            } catch (IOException e) {
+                log.error("{} {} 出错：{}", action, index, e.getMessage());
+            }
+        }
+    }
+
+    private void writeTo(String action, TargetWrite write, String index) {
+        try {
+            write.write(index);
+        } catch (IOException e) {
+            log.error("{} {} 出错：{}", action, index, e.getMessage());
+        }
+    }
+
+    // 对每个写入目标生成 Bulk 操作并一起提交，返回出错的文档 id，请求本身失败时返回 null；
+    // paper_building 已被移除时按重新读取的写入目标再提交一次
+    private Set<String> bulkToTargets(BiConsumer<BulkRequest.Builder, String> operations, boolean conflictAsSuccess) {
+        BulkResponse response = bulkTo(paperIndexTool.getWriteTargets(), operations);
+        if (response != null && response.errors() && response.items().stream()
+                .anyMatch(item -> item.error() != null && isBuildingGone(item.index(), item.error().type()))) {
+            List<String> targets = paperIndexTool.refreshWriteTargets();
+            log.info("论文索引已切换，按新的写入目标 {} 重新写入", targets);
+            response = bulkTo(targets, operations);
+        }
+        return bulkFailures(response, conflictAsSuccess);
+    }
+
+    private BulkResponse bulkTo(List<String> targets, BiConsumer<BulkRequest.Builder, String> operations) {
+        BulkRequest.Builder bulk = new BulkRequest.Builder();
+        for (String index : targets) {
+            operations.accept(bulk, index);
+        }
+        try {
+            return elasticsearchClient.bulk(bulk.build());
+        } catch (IOException e) {
+            log.error("批量写入论文至ElasticSearch出错：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    // 提交 Bulk 请求，返回没有出错的论文数；conflictAsSuccess 为 true 时文档已存在不算出错
+    private int bulk(BulkRequest request, int count, boolean conflictAsSuccess) {
+        Set<String> failed = bulkFailures(request, conflictAsSuccess);
+        return failed == null ? 0 : count - failed.size();
+    }
+
+    // 提交 Bulk 请求，返回出错的文档 id，请求本身失败时返回 null；删除不存在的文档不算出错
+    private Set<String> bulkFailures(BulkRequest request, boolean conflictAsSuccess) {
+        try {
+            return bulkFailures(elasticsearchClient.bulk(request), conflictAsSuccess);
+        } catch (IOException e) {
+            log.error("批量写入论文至ElasticSearch出错：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Set<String> bulkFailures(BulkResponse response, boolean conflictAsSuccess) {
+        if (response == null) {
+            return null;
+        }
+        if (!response.errors()) {
+            return Collections.emptySet();
+        }
+        Set<String> failed = new HashSet<>();
+        for (BulkResponseItem item : response.items()) {
+            if (item.error() != null && !(conflictAsSuccess && item.status() == 409)) {
+                failed.add(item.id());
+            }
+        }
+        if (!failed.isEmpty()) {
+            log.error("批量写入论文至ElasticSearch时有 {} 条失败", failed.size());
+        }
+        return failed;
     }
 
     /**
@@ -171,7 +408,7 @@ public class ElasticSearchTool {
     public List<Long> searchPapersIdByAuths(String keyword, Integer page, Integer size, boolean onlyPass) {
         try {
             List<Long> list = new ArrayList<>();
-            Query query = Query.of(q -> q.multiMatch(m -> m.fields("auths").query(keyword).fuzziness("AUTO")));
+            Query query = Query.of(q -> q.multiMatch(m -> m.fields("authNames").query(keyword).fuzziness("AUTO")));
             return getPaperIds(page, size, onlyPass, list, query);
         } catch (IOException e) {
             log.error("查询ES相关论文id时出错了：{}", e.getMessage());
@@ -181,16 +418,16 @@ public class ElasticSearchTool {
 
     // 将query与状态查询结合起来
     private List<Long> getPaperIds(Integer page, Integer size, boolean onlyPass, List<Long> list, Query query) throws IOException {
-        Query query1 = Query.of(q -> q.constantScore(c -> c.filter(f -> f.term(t -> t.field("status").value(0)))));
+        Query query1 = Query.of(q -> q.constantScore(c -> c.filter(f -> f.term(t -> t.field("stats").value(0)))));
         Query bool = Query.of(q -> q.bool(b -> b.must(query1).must(query)));
         SearchRequest searchRequest;
         if (onlyPass) {
-            searchRequest = new SearchRequest.Builder().index("Paper").query(bool).from((page - 1) * size).size(size).build();
+            searchRequest = new SearchRequest.Builder().index(PAPER_INDEX).query(bool).from((page - 1) * size).size(size).build();
         } else {
-            searchRequest = new SearchRequest.Builder().index("Paper").query(query).from((page - 1) * size).size(size).build();
+            searchRequest = new SearchRequest.Builder().index(PAPER_INDEX).query(query).from((page - 1) * size).size(size).build();
         }
-        SearchResponse<Paper> searchResponse = elasticsearchClient.search(searchRequest, Paper.class);
-        for (Hit<Paper> hit : searchResponse.hits().hits()) {
+        SearchResponse<PaperDocument> searchResponse = elasticsearchClient.search(searchRequest, PaperDocument.class);
+        for (Hit<PaperDocument> hit : searchResponse.hits().hits()) {
             if (hit.source() != null) {
                 list.add(hit.source().getPid());
             }
@@ -238,6 +475,293 @@ public class ElasticSearchTool {
         }
     }
 
+    /**
+     * 一框式检索的查询：在 condition 对应的字段上模糊匹配
+     * @param condition 查询条件
+     * @param keyword   查询关键词
+     * @return 查询
+     */
+    public Query buildConditionQuery(String condition, String keyword) {
+        return Query.of(q -> q.multiMatch(m -> m.fields(toEsField(condition)).query(keyword).fuzziness("AUTO")));
+    }
+
+    /**
+     * 将高级检索的多个条件编译为一个 bool 查询，按从左到右的顺序组合：
+     * AND 为 must，OR 为 should，NOT 为 must_not
+     * @param logic     none=0/and=1/or=2/not=3
+     * @param condition 查询字段
+     * @param keyword   查询关键词（name 或者 %name%）
+     * @return 组合后的查询
+     */
+    public Query buildAdvancedQuery(String[] logic, String[] condition, String[] keyword) {
+        Query result = null;
+        for (int i = 0; i < condition.length; i++) {
+            String field = toEsField(condition[i]);
+            String text = keyword[i].strip().replace("%", "");
+            Query clause = Query.of(q -> q.match(m -> m.field(field).query(text).operator(Operator.And)));
+            int op = Integer.parseInt(logic[i].strip());
+            Query left = result;
+            if (op == 3 || op < 0) { // NOT
+                result = Query.of(q -> q.bool(b -> {
+                    if (left != null) {
+                        b.must(left);
+                    }
+                    return b.mustNot(clause);
+                }));
+            } else if (left == null) {
+                result = clause;
+            } else if (op == 2) { // OR
+                result = Query.of(q -> q.bool(b -> b.should(left).should(clause).minimumShouldMatch("1")));
+            } else { // AND
+                result = Query.of(q -> q.bool(b -> b.must(left).must(clause)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按给定query分页查询论文，排序、search_after游标和 track_total_hits 总数都交给ES，
+     * 同一次请求中用聚合统计年份、来源、类型、主题的筛选项；
+     * sortType=4 时在ES中按综合评分排序，覆盖全部命中结果，每条结果带上综合评分
+     * @return 当前页结果，ES出错时返回null，调用方据此决定是否回退到MySQL
+     */
+    public ESSearchPage searchPaperPage(Query query, Integer sortType, Integer order,
+                                        Integer size, Integer offset, List<String> searchAfter) {
+        return searchPaperPage(query, null, sortType, order, size, offset, searchAfter);
+    }
+
+    /**
+     * 在检索条件下按筛选条件分页查询，用于命中结果超出检索会话保存范围时的筛选：
+     * 筛选条件作为 post_filter 只作用于返回的论文和总数，每个筛选项的选项数在其余筛选项的条件下聚合，
+     * 和 SearchFacetIndex 的统计方式一致；from + size 不能超过 MAX_RESULT_WINDOW
+     * @param sc 筛选条件
+     * @return 当前页结果，ES出错时返回null
+     */
+    public ESSearchPage filterPaperPage(Query query, FilterCondition sc, Integer sortType, Integer order,
+                                        Integer size, Integer offset) {
+        return searchPaperPage(query, sc, sortType, order, size, offset, null);
+    }
+
+    private ESSearchPage searchPaperPage(Query query, FilterCondition sc, Integer sortType, Integer order,
+                                         Integer size, Integer offset, List<String> searchAfter) {
+        boolean ranked = sortType != null && sortType == 4;
+        Map<String, Query> filters = sc == null ? Collections.emptyMap() : getFacetFilters(sc);
+        try {
+            SearchRequest.Builder builder = new SearchRequest.Builder()
+                    .index(PAPER_INDEX)
+                    .query(ranked ? buildRankQuery(query) : query)
+                    .sort(getPaperSort(sortType, order))
+                    .size(size)
+                    .trackTotalHits(t -> t.enabled(true))
+                    .source(s -> s.filter(f -> f.includes(PAPER_DIGEST_FIELDS)));
+            for (String[] facet : FACETS) {
+                if (sc == null) {
+                    builder.aggregations(facet[1], facetAggregation(facet));
+                } else {
+                    // 选项数只受其余筛选项的限制
+                    Query others = allOf(filters, facet[0]);
+                    builder.aggregations(facet[1], a -> a.filter(others)
+                            .aggregations(FACET_OPTIONS, facetAggregation(facet)));
+                }
+            }
+            if (!filters.isEmpty()) {
+                builder.postFilter(allOf(filters, null));
+            }
+            if (searchAfter != null && !searchAfter.isEmpty()) {
+                builder.searchAfter(toFieldValues(searchAfter));
+            } else {
+                builder.from((offset - 1) * size);
+            }
+            SearchResponse<PaperDocument> searchResponse = elasticsearchClient.search(builder.build(), PaperDocument.class);
+
+            List<SearchResultPaper> papers = new ArrayList<>();
+            List<String> cursor = null;
+            for (Hit<PaperDocument> hit : searchResponse.hits().hits()) {
+                PaperDocument paper = hit.source();
+                if (paper != null) {
+                    papers.add(new SearchResultPaper(paper.getPid(), null, PaperCodec.toJson(paper.getKeywords()),
+                            null, null, paper.getType(), paper.getTheme(), paper.getPublishDate(),
+                            paper.getDerivation(), paper.getRefTimes(), paper.getFavTimes(), null,
+                            ranked ? hit.score() : null));
+                }
+                cursor = toCursor(hit.sort());
+            }
+            long total = searchResponse.hits().total() == null ? papers.size() : searchResponse.hits().total().value();
+            return new ESSearchPage(papers, total, cursor, getPaperOptions(searchResponse.aggregations()));
+        } catch (IOException | ElasticsearchException | JsonpMappingException e) {
+            log.error("分页查询ES相关论文时出错了：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    // 游标以字符串在前端往返，整数、小数还原为数值，和排序字段的类型一致
+    private static List<FieldValue> toFieldValues(List<String> cursor) {
+        List<FieldValue> values = new ArrayList<>(cursor.size());
+        for (String value : cursor) {
+            try {
+                values.add(FieldValue.of(Long.parseLong(value)));
+            } catch (NumberFormatException e) {
+                try {
+                    values.add(FieldValue.of(Double.parseDouble(value)));
+                } catch (NumberFormatException e1) {
+                    values.add(FieldValue.of(value));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static List<String> toCursor(List<FieldValue> sort) {
+        List<String> cursor = new ArrayList<>(sort.size());
+        for (FieldValue value : sort) {
+            if (value.isLong()) {
+                cursor.add(String.valueOf(value.longValue()));
+            } else if (value.isDouble()) {
+                cursor.add(String.valueOf(value.doubleValue()));
+            } else if (value.isBoolean()) {
+                cursor.add(String.valueOf(value.booleanValue()));
+            } else if (value.isString()) {
+                cursor.add(value.stringValue());
+            } else {
+                cursor.add(null);
+            }
+        }
+        return cursor;
+    }
+
+    // 筛选项的聚合：年份按出版时间的自然年分桶，其余按 keyword 子字段取前 OPTION_SIZE 个
+    private static Aggregation facetAggregation(String[] facet) {
+        if (SearchFacetIndex.YEAR.equals(facet[0])) {
+            return Aggregation.of(a -> a.dateHistogram(d -> d.field(facet[2])
+                    .calendarInterval(CalendarInterval.Year).format("yyyy").minDocCount(1)));
+        }
+        return Aggregation.of(a -> a.terms(t -> t.field(facet[2]).size(OPTION_SIZE)));
+    }
+
+    // 各筛选项的过滤条件，同一筛选项内的多个选择取并集；没有选择的筛选项不出现
+    private static Map<String, Query> getFacetFilters(FilterCondition sc) {
+        Map<String, Query> filters = new HashMap<>();
+        for (String[] facet : FACETS) {
+            List<?> selected = SearchFacetIndex.getSelected(sc, facet[0]);
+            if (selected.isEmpty()) {
+                continue;
+            }
+            if (SearchFacetIndex.YEAR.equals(facet[0])) {
+                List<Query> years = new ArrayList<>();
+                for (Object value : selected) {
+                    int year = Integer.parseInt(String.valueOf(value).strip());
+                    years.add(Query.of(q -> q.range(r -> r.field(facet[2]).format("yyyy")
+                            .gte(JsonData.of(String.valueOf(year))).lt(JsonData.of(String.valueOf(year + 1))))));
+                }
+                filters.put(facet[0], Query.of(q -> q.bool(b -> b.should(years).minimumShouldMatch("1"))));
+            } else {
+                List<FieldValue> values = new ArrayList<>();
+                for (Object value : selected) {
+                    values.add(FieldValue.of(String.valueOf(value)));
+                }
+                filters.put(facet[0], Query.of(q -> q.terms(t -> t.field(facet[2]).terms(v -> v.value(values)))));
+            }
+        }
+        return filters;
+    }
+
+    // 除 except 之外所有筛选项的过滤条件取交集
+    private static Query allOf(Map<String, Query> filters, String except) {
+        List<Query> queries = new ArrayList<>();
+        filters.forEach((facet, filter) -> {
+            if (!facet.equals(except)) {
+                queries.add(filter);
+            }
+        });
+        return Query.of(q -> q.bool(b -> b.filter(queries)));
+    }
+
+    // 将聚合结果整理为筛选项，每项按数量从大到小保留前 OPTION_SIZE 个；筛选时各项的聚合包在 filter 聚合中
+    private Map<String, Map<String, Integer>> getPaperOptions(Map<String, Aggregate> results) {
+        Map<String, Aggregate> aggregations = new HashMap<>();
+        results.forEach((name, aggregate) -> aggregations.put(name,
+                aggregate.isFilter() ? aggregate.filter().aggregations().get(FACET_OPTIONS) : aggregate));
+        Map<String, Map<String, Integer>> options = new HashMap<>();
+
+        List<DateHistogramBucket> yearBuckets = new ArrayList<>(aggregations.get("years").dateHistogram().buckets().array());
+        yearBuckets.sort((o1, o2) -> Long.compare(o2.docCount(), o1.docCount()));
+        Map<String, Integer> years = new LinkedHashMap<>();
+        for (DateHistogramBucket bucket : yearBuckets.subList(0, Math.min(OPTION_SIZE, yearBuckets.size()))) {
+            years.put(bucket.keyAsString(), (int) bucket.docCount());
+        }
+        options.put("years", years);
+
+        for (String name : List.of("derivations", "types", "themes")) {
+            Map<String, Integer> option = new LinkedHashMap<>();
+            for (StringTermsBucket bucket : aggregations.get(name).sterms().buckets().array()) {
+                option.put(bucket.key().stringValue(), (int) bucket.docCount());
+            }
+            options.put(name, option);
+        }
+        return options;
+    }
+
+    // 用 function_score 包装检索条件，脚本得分替换原来的 BM25 得分；权重每次从配置读取，修改后即时生效
+    private Query buildRankQuery(Query query) {
+        Map<String, JsonData> params = new HashMap<>();
+        params.put("refWeight", JsonData.of(paperRankConfig.getRefWeight()));
+        params.put("favWeight", JsonData.of(paperRankConfig.getFavWeight()));
+        params.put("timeWeight", JsonData.of(paperRankConfig.getTimeWeight()));
+        params.put("textWeight", JsonData.of(paperRankConfig.getTextWeight()));
+        params.put("refScale", JsonData.of(paperRankConfig.getRefScale()));
+        params.put("favScale", JsonData.of(paperRankConfig.getFavScale()));
+        params.put("timeDecay", JsonData.of(paperRankConfig.getTimeDecay()));
+        params.put("textSaturation", JsonData.of(paperRankConfig.getTextSaturation()));
+        params.put("now", JsonData.of(System.currentTimeMillis() / DAY_MILLIS * DAY_MILLIS));
+        return Query.of(q -> q.functionScore(fs -> fs
+                .query(query)
+                .functions(f -> f.scriptScore(ss -> ss.script(sc -> sc.inline(i -> i.source(RANK_SCRIPT).params(params)))))
+                .boostMode(FunctionBoostMode.Replace)));
+    }
+
+    // 排序字段，最后按pid排序保证 search_after 游标稳定
+    private List<SortOptions> getPaperSort(Integer sortType, Integer order) {
+        SortOrder sortOrder = order != null && order == 1 ? SortOrder.Asc : SortOrder.Desc;
+        List<SortOptions> sorts = new ArrayList<>();
+        String field = null;
+        if (sortType != null) {
+            switch (sortType) {
+                case 1: field = "publishDate"; break;
+                case 2: field = "refTimes"; break;
+                case 3: field = "favTimes"; break;
+                default: break;
+            }
+        }
+        if (field != null) {
+            String sortField = field;
+            sorts.add(SortOptions.of(s -> s.field(f -> f.field(sortField).order(sortOrder))));
+        } else if (sortType != null && sortType == 4) {
+            sorts.add(SortOptions.of(s -> s.score(sc -> sc.order(sortOrder))));
+        } else {
+            sorts.add(SortOptions.of(s -> s.score(sc -> sc.order(SortOrder.Desc))));
+        }
+        sorts.add(SortOptions.of(s -> s.field(f -> f.field("pid").order(SortOrder.Asc))));
+        return sorts;
+    }
+
+    // 前端传入的是数据库列名（如 ess_abs），ES文档字段按 PaperDocument 序列化为驼峰，作者在 authNames 中检索
+    private String toEsField(String condition) {
+        if ("auths".equals(condition.strip())) {
+            return "authNames";
+        }
+        StringBuilder sb = new StringBuilder();
+        boolean upper = false;
+        for (char c : condition.strip().toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return sb.toString();
+    }
+
     public List<Paper> searchPapersByPid(Long pid, Integer page, Integer size, boolean onlyPass){
         try {
             List<Paper> list = new ArrayList<>();
@@ -260,7 +784,7 @@ public class ElasticSearchTool {
     public List<Paper> searchPapersByAuths(String keyword, Integer page, Integer size, boolean onlyPass) {
         try {
             List<Paper> list = new ArrayList<>();
-            Query query = Query.of(q -> q.multiMatch(m -> m.fields("auths").query(keyword).fuzziness("AUTO")));
+            Query query = Query.of(q -> q.multiMatch(m -> m.fields("authNames").query(keyword).fuzziness("AUTO")));
             return getPapers(page, size, onlyPass, list, query);
             //return getPapers(page, size, onlyPass, "auths", keyword);
         } catch (IOException e) {
@@ -271,30 +795,30 @@ public class ElasticSearchTool {
 
     // 将query与状态查询结合起来
     private List<Paper> getPapers(Integer page, Integer size, boolean onlyPass, List<Paper> list, Query query) throws IOException {
-        Query query1 = Query.of(f -> f.term(t -> t.field("status").value(0L)));
+        Query query1 = Query.of(f -> f.term(t -> t.field("stats").value(0L)));
         Query bool = Query.of(q -> q.bool(b -> b.must(query1).must(query)));
         SearchRequest searchRequest;
         if(page==null && size==null){
             /*if (onlyPass){
-                searchRequest = new SearchRequest.Builder().index("paper").query(bool).build();
+                searchRequest = new SearchRequest.Builder().index(PAPER_INDEX).query(bool).build();
             }
-            else*/ searchRequest = new SearchRequest.Builder().index("paper").query(query).build();
+            else*/ searchRequest = new SearchRequest.Builder().index(PAPER_INDEX).query(query).build();
         }
         else if(page==null){
-            searchRequest = new SearchRequest.Builder().index("paper").query(query).size(size).build();
+            searchRequest = new SearchRequest.Builder().index(PAPER_INDEX).query(query).size(size).build();
         }
         else{
             /*if (onlyPass) {
-                searchRequest = new SearchRequest.Builder().index("paper").query(bool).from((page - 1) * size).size(size).build();
+                searchRequest = new SearchRequest.Builder().index(PAPER_INDEX).query(bool).from((page - 1) * size).size(size).build();
             } else*/ {
-                searchRequest = new SearchRequest.Builder().index("paper").query(query).from((page - 1) * size).size(size).build();
+                searchRequest = new SearchRequest.Builder().index(PAPER_INDEX).query(query).from((page - 1) * size).size(size).build();
             }
         }
 
-        SearchResponse<Paper> searchResponse = elasticsearchClient.search(searchRequest, Paper.class);
-        for (Hit<Paper> hit : searchResponse.hits().hits()) {
+        SearchResponse<PaperDocument> searchResponse = elasticsearchClient.search(searchRequest, PaperDocument.class);
+        for (Hit<PaperDocument> hit : searchResponse.hits().hits()) {
             if (hit.source() != null) {
-                list.add(hit.source());
+                list.add(hit.source().toPaper());
             }
         }
         return list;
@@ -0,0 +1,316 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.buaa01.illumineer_backend.entity.Category;
+import com.buaa01.illumineer_backend.entity.Paper;
+import com.buaa01.illumineer_backend.service.CategoryService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * OpenAlex works 记录的流式解析：按 token 顺序读取一行 JSON，只取需要的字段，其余字段直接跳过，不构建整棵 JSON 树。
+ * 线程安全，可以被多个解析线程共享
+ */
+@Component
+public class OpenAlexWorkParser {
+    /** JsonFactory 线程安全，所有解析共用 */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    /** 摘要的最大词数，超出的位置忽略 */
+    private static final int MAX_ABSTRACT_WORDS = 1 << 16;
+    /** 提取 URL 中最后的数字 */
+    private static final Pattern TRAILING_DIGITS = Pattern.compile("(\\d+)$");
+
+    @Autowired
+    private CategoryService categoryService;
+
+    /** 细分领域id → 领域 JSON，避免每条记录都查库和序列化 */
+    private final Map<String, String> categoryCache = new ConcurrentHashMap<>();
+
+    /**
+     * 解析一行 works 记录
+     * @param line 一行 JSON
+     * @return 文献
+     */
+    public Paper parse(String line) throws IOException, SQLException {
+        Paper article = new Paper();
+        article.setTitle("");
+        article.setEssAbs("");
+        article.setKeywords(new ArrayList<>());
+        article.setContentUrl("");
+        article.setAuths(new HashMap<>());
+        article.setDerivation("");
+        article.setRefs(new ArrayList<>());
+        article.setType("");
+        article.setFavTimes(0);
+        article.setStats(0);
+        try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        article.setPid(toWorkId(parser.getText()));
+                        break;
+                    case "title":
+                        article.setTitle(parser.getText());
+                        break;
+                    case "abstract_inverted_index":
+                        article.setEssAbs(readAbstract(parser));
+                        break;
+                    case "keywords":
+                        article.setKeywords(readKeywords(parser));
+                        break;
+                    case "primary_location":
+                        readPrimaryLocation(parser, article);
+                        break;
+                    case "authorships":
+                        article.setAuths(readAuthorships(parser));
+                        break;
+                    case "primary_topic":
+                        readPrimaryTopic(parser, article);
+                        break;
+                    case "publication_date":
+                        article.setPublishDate(Date.from(LocalDate.parse(parser.getText())
+                                .atStartOfDay(ZoneId.systemDefault()).toInstant()));
+                        break;
+                    case "cited_by_count":
+                        article.setRefTimes(parser.getIntValue());
+                        break;
+                    case "related_works":
+                        article.setRefs(readWorkIds(parser));
+                        break;
+                    case "type":
+                        article.setType(parser.getText());
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        if (article.getPid() == null) {
+            throw new IOException("works 记录缺少 id");
+        }
+        return article;
+    }
+
+    // https://openalex.org/W123 → 123
+    private static long toWorkId(String oid) {
+        return Long.parseLong(oid.substring(oid.indexOf('W') + 1));
+    }
+
+    // 倒排索引 {词: [位置...]} 还原为摘要：每个词直接写入对应位置，再按位置顺序拼接
+    private static String readAbstract(JsonParser parser) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+        String[] words = new String[256];
+        int length = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String word = parser.getCurrentName();
+            expect(parser.nextToken(), JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                int position = parser.getIntValue();
+                if (position < 0 || position >= MAX_ABSTRACT_WORDS) {
+                    continue;
+                }
+                if (position >= words.length) {
+                    words = Arrays.copyOf(words, Math.max(words.length * 2, position + 1));
+                }
+                words[position] = word;
+                length = Math.max(length, position + 1);
+            }
+        }
+        StringBuilder sb = new StringBuilder(length * 8);
+        for (int i = 0; i < length; i++) {
+            if (words[i] != null) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(words[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    // [{display_name: ...}, ...]
+    private static List<String> readKeywords(JsonParser parser) throws IOException {
+        List<String> keywords = new ArrayList<>();
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String keyword = readDisplayName(parser);
+            if (keyword != null) {
+                keywords.add(keyword);
+            }
+        }
+        return keywords;
+    }
+
+    // [{author: {display_name: ...}}, ...]，作者名 → 0（未认领）
+    private static Map<String, Integer> readAuthorships(JsonParser parser) throws IOException {
+        Map<String, Integer> auths = new HashMap<>();
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && "author".equals(name)) {
+                    String displayName = readDisplayName(parser);
+                    if (displayName != null) {
+                        auths.put(displayName, 0);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return auths;
+    }
+
+    // primary_location.pdf_url 和 primary_location.source.publisher
+    private static void readPrimaryLocation(JsonParser parser, Paper article) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("pdf_url".equals(name) && token == JsonToken.VALUE_STRING) {
+                article.setContentUrl(parser.getText());
+            } else if ("source".equals(name) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.VALUE_STRING && "publisher".equals(field)) {
+                        article.setDerivation(parser.getText());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // primary_topic.display_name 作为主题，subfield、field 作为领域
+    private void readPrimaryTopic(JsonParser parser, Paper article) throws IOException, SQLException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+        String[] subfield = null;
+        String[] field = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("display_name".equals(name) && token == JsonToken.VALUE_STRING) {
+                article.setTheme(parser.getText());
+            } else if ("subfield".equals(name) && token == JsonToken.START_OBJECT) {
+                subfield = readIdAndName(parser);
+            } else if ("field".equals(name) && token == JsonToken.START_OBJECT) {
+                field = readIdAndName(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (subfield != null && field != null) {
+            article.setCategory(getCategory(trailingDigits(subfield[0], "1"), trailingDigits(field[0], "0"),
+                    subfield[1], field[1]));
+        }
+    }
+
+    // 当前对象的 display_name，读完整个对象
+    private static String readDisplayName(JsonParser parser) throws IOException {
+        String displayName = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.VALUE_STRING && "display_name".equals(name)) {
+                displayName = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return displayName;
+    }
+
+    // 当前对象的 {id, display_name}
+    private static String[] readIdAndName(JsonParser parser) throws IOException {
+        String[] idAndName = new String[2];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING && "id".equals(name)) {
+                idAndName[0] = parser.getText();
+            } else if (token == JsonToken.VALUE_STRING && "display_name".equals(name)) {
+                idAndName[1] = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return idAndName;
+    }
+
+    // ["https://openalex.org/W1", ...]
+    private static List<Long> readWorkIds(JsonParser parser) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                ids.add(toWorkId(parser.getText()));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return ids;
+    }
+
+    private static String trailingDigits(String url, String defaultValue) {
+        if (url == null) {
+            return defaultValue;
+        }
+        Matcher matcher = TRAILING_DIGITS.matcher(url.trim());
+        return matcher.find() ? matcher.group(1) : defaultValue;
+    }
+
+    // 领域 JSON，先查本地缓存；多个解析线程同时遇到新的领域时只插入一次
+    private String getCategory(String subfieldNumber, String fieldNumber, String subfield, String field)
+            throws IOException, SQLException {
+        String category = categoryCache.get(subfieldNumber);
+        if (category != null) {
+            return category;
+        }
+        synchronized (categoryCache) {
+            category = categoryCache.get(subfieldNumber);
+            if (category == null) {
+                Category rs = categoryService.getCategoryByID(subfieldNumber);
+                if (rs == null) {
+                    rs = categoryService.insertCategory(subfieldNumber, fieldNumber, subfield, field);
+                }
+                category = rs.toJsonString();
+                categoryCache.put(subfieldNumber, category);
+            }
+        }
+        return category;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("works 记录格式错误：期望 " + expected + "，实际为 " + actual);
+        }
+    }
+}
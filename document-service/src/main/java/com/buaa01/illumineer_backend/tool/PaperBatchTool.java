@@ -0,0 +1,88 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.buaa01.illumineer_backend.entity.PaperAdo;
+import com.buaa01.illumineer_backend.entity.SearchResultPaper;
+import com.buaa01.illumineer_backend.mapper.PaperMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 批量回表：一组pid只用一次（分块的）WHERE pid IN (...) 查询
+ */
+@Component
+@Slf4j
+public class PaperBatchTool {
+    /** 单条 IN 查询最多包含的pid数 */
+    private static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    private PaperMapper paperMapper;
+    @Autowired
+    private PaperCounterTool paperCounterTool;
+
+    /**
+     * 批量获取文献信息
+     * @param pids 文献ID，可以有重复
+     * @return 按pids的顺序排列的文献，不存在或已删除的文献会被跳过
+     */
+    public List<Map<String, Object>> getPapersByPids(Collection<Long> pids) {
+        return getByPids(pids, paperMapper::getPapersByPids, paper -> Long.parseLong(paper.get("pid").toString()));
+    }
+
+    /**
+     * 批量获取检索结果卡片，只查询列表需要的列，引用、收藏计数包含尚未写库的增量
+     * @param pids 文献ID，可以有重复
+     * @return 按pids的顺序排列的文献，不存在或已删除的文献会被跳过
+     */
+    public List<SearchResultPaper> getPaperCardsByPids(Collection<Long> pids) {
+        List<SearchResultPaper> papers = getStoredPaperCardsByPids(pids);
+        paperCounterTool.applyPending(papers);
+        return papers;
+    }
+
+    /**
+     * 批量获取检索结果卡片，计数只取数据库中的值，用于写入缓存；读出缓存后再加上增量
+     * @param pids 文献ID，可以有重复
+     * @return 按pids的顺序排列的文献，不存在或已删除的文献会被跳过
+     */
+    public List<SearchResultPaper> getStoredPaperCardsByPids(Collection<Long> pids) {
+        return getByPids(pids, paperMapper::getPaperCardsByPids, SearchResultPaper::getPid);
+    }
+
+    /**
+     * 批量获取认领条目，只查询认领需要的列
+     * @param pids 文献ID，可以有重复
+     * @return 按pids的顺序排列的认领条目，不存在或已删除的文献会被跳过
+     */
+    public List<PaperAdo> getPaperAdoptionsByPids(Collection<Long> pids) {
+        return getByPids(pids, paperMapper::getPaperAdoptionsByPids, PaperAdo::getPid);
+    }
+
+    // 去重后分块查询，再按输入顺序排列
+    private <T> List<T> getByPids(Collection<Long> pids, Function<List<Long>, List<T>> query, Function<T, Long> pidOf) {
+        if (pids == null || pids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(pids));
+        Map<Long, T> paperMap = new HashMap<>(distinct.size() * 2);
+        for (int i = 0; i < distinct.size(); i += CHUNK_SIZE) {
+            List<Long> chunk = distinct.subList(i, Math.min(i + CHUNK_SIZE, distinct.size()));
+            for (T paper : query.apply(chunk)) {
+                paperMap.put(pidOf.apply(paper), paper);
+            }
+        }
+
+        List<T> papers = new ArrayList<>(pids.size());
+        for (Long pid : pids) {
+            T paper = paperMap.get(pid);
+            if (paper != null) {
+                papers.add(paper);
+            }
+        }
+        return papers;
+    }
+}
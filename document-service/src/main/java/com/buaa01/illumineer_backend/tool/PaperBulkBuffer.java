@@ -0,0 +1,89 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.buaa01.illumineer_backend.entity.Paper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 论文的 ES 批量写入缓冲：累积的条数或估算的字节数达到上限时提交一次 Bulk 请求。
+ * 不是线程安全的，每个写入线程使用自己的缓冲
+ */
+public class PaperBulkBuffer {
+    /** 每篇文档除文本字段外的固定开销（字段名、数字、日期、bulk 元数据行） */
+    private static final int DOC_OVERHEAD = 256;
+
+    private final Function<List<Paper>, Integer> writer;
+    private final int maxDocs;
+    private final long maxBytes;
+    private List<Paper> papers = new ArrayList<>();
+    private long bytes;
+    private long indexed;
+    private int requests;
+
+    /**
+     * @param writer   提交一批论文，返回写入成功的条数
+     * @param maxDocs  每次提交的最大条数
+     * @param maxBytes 每次提交的最大字节数（估算）
+     */
+    public PaperBulkBuffer(Function<List<Paper>, Integer> writer, int maxDocs, long maxBytes) {
+        this.writer = writer;
+        this.maxDocs = maxDocs;
+        this.maxBytes = maxBytes;
+    }
+
+    public void add(Paper paper) {
+        papers.add(paper);
+        bytes += estimateBytes(paper);
+        if (papers.size() >= maxDocs || bytes >= maxBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * 提交缓冲中的所有论文，有写入失败的条目时抛出异常，调用方不应记录这批数据的进度
+     */
+    public void flush() {
+        if (papers.isEmpty()) {
+            return;
+        }
+        int count = writer.apply(papers);
+        indexed += count;
+        requests++;
+        int size = papers.size();
+        papers = new ArrayList<>();
+        bytes = 0;
+        if (count < size) {
+            throw new IllegalStateException("Bulk 写入 " + size + " 篇论文，其中 " + (size - count) + " 篇失败");
+        }
+    }
+
+    /** 写入成功的条数 */
+    public long getIndexed() {
+        return indexed;
+    }
+
+    /** 提交的 Bulk 请求数 */
+    public int getRequests() {
+        return requests;
+    }
+
+    // 按 UTF-8 最坏情况每个字符 3 字节估算，宁可提前提交
+    private static long estimateBytes(Paper paper) {
+        long length = length(paper.getTitle()) + length(paper.getCategory()) + length(paper.getType())
+                + length(paper.getTheme()) + length(paper.getDerivation()) + length(paper.getContentUrl())
+                + length(paper.getEssAbs());
+        if (paper.getKeywords() != null) {
+            length += paper.getKeywords().toString().length();
+        }
+        if (paper.getAuths() != null) {
+            length += paper.getAuths().toString().length();
+        }
+        return length * 3 + DOC_OVERHEAD;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
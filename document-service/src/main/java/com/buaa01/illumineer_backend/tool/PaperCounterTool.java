@@ -0,0 +1,183 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.buaa01.illumineer_backend.entity.Paper;
+import com.buaa01.illumineer_backend.entity.PaperCounterDelta;
+import com.buaa01.illumineer_backend.entity.SearchResultPaper;
+import com.buaa01.illumineer_backend.mapper.PaperMapper;
+import com.buaa01.illumineer_backend.mapper.PaperOutboxMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * 引用、收藏计数的延迟写入：每次点击只在 Redis 的 paper:counter:pending 中 HINCRBY（字段为 {列名}:{pid}），
+ * 不再逐次 UPDATE 同一行，热门文献不会在行锁上排队。
+ * 定时任务把 pending 整体改名为 paper:counter:flushing 后分块写库，每块一条 UPDATE ... CASE，
+ * 同一事务中写入 paper_outbox，由 PaperOutboxRelay 部分更新 ES，提交后删除这些文献的详情缓存。
+ * 读取计数时加上两个 hash 中尚未写库的增量；写库和删除增量之间的短暂时间内读到的计数可能偏大
+ */
+@Component
+@Slf4j
+public class PaperCounterTool {
+    private static final String PENDING_KEY = "paper:counter:pending";
+    /** 正在写库的增量，写库中断时下次先处理它 */
+    private static final String FLUSHING_KEY = "paper:counter:flushing";
+    /** 同一时间只有一个副本写库 */
+    private static final String LOCK_KEY = "paper:counter:flush-lock";
+    /** 写库后同步到 ES 的列 */
+    private static final String COUNTER_COLUMNS = PaperOutboxMapper.REF_TIMES + "," + PaperOutboxMapper.FAV_TIMES;
+    /** 每条 UPDATE 包含的文献数 */
+    private static final int CHUNK_SIZE = 500;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    /** 写库锁的有效期（秒） */
+    @Value("${paper.counter.lock-seconds:60}")
+    private long lockSeconds;
+
+    @Autowired
+    private RedisTool redisTool;
+    @Autowired
+    private PaperMapper paperMapper;
+    @Autowired
+    private PaperOutboxMapper paperOutboxMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private PaperDetailCache paperDetailCache;
+
+    /**
+     * 计数加一
+     * @param pid 文献ID
+     * @param column PaperOutboxMapper.REF_TIMES 或 PaperOutboxMapper.FAV_TIMES
+     */
+    public void increment(Long pid, String column) {
+        redisTool.hashIncrement(PENDING_KEY, column + ":" + pid, 1);
+    }
+
+    /**
+     * 给详情加上尚未写库的增量
+     */
+    public void applyPending(Paper paper) {
+        Map<Long, long[]> pending = getPending(Collections.singletonList(paper.getPid()));
+        long[] delta = pending.get(paper.getPid());
+        if (delta != null) {
+            paper.setRefTimes((int) (nullToZero(paper.getRefTimes()) + delta[0]));
+            paper.setFavTimes((int) (nullToZero(paper.getFavTimes()) + delta[1]));
+        }
+    }
+
+    /**
+     * 给检索结果卡片加上尚未写库的增量
+     */
+    public void applyPending(List<SearchResultPaper> papers) {
+        if (papers.isEmpty()) {
+            return;
+        }
+        List<Long> pids = new ArrayList<>(papers.size());
+        for (SearchResultPaper paper : papers) {
+            pids.add(paper.getPid());
+        }
+        Map<Long, long[]> pending = getPending(pids);
+        for (SearchResultPaper paper : papers) {
+            long[] delta = pending.get(paper.getPid());
+            if (delta != null) {
+                paper.setRefTimes((int) (nullToZero(paper.getRefTimes()) + delta[0]));
+                paper.setFavTime((int) (nullToZero(paper.getFavTime()) + delta[1]));
+            }
+        }
+    }
+
+    /**
+     * 把累积的增量写入数据库
+     */
+    @Scheduled(fixedDelayString = "${paper.counter.flush-interval:1000}")
+    public void flush() {
+        if (!redisTool.setIfAbsent(LOCK_KEY, owner, lockSeconds)) {
+            return;
+        }
+        try {
+            if (!redisTool.isExist(FLUSHING_KEY)) {
+                if (!redisTool.isExist(PENDING_KEY)) {
+                    return;
+                }
+                // 改名是原子的，之后的点击计入新的 pending
+                redisTool.renameIfAbsent(PENDING_KEY, FLUSHING_KEY);
+            }
+            Map<Object, Object> entries = redisTool.hashGet(FLUSHING_KEY);
+            if (entries == null || entries.isEmpty()) {
+                return;
+            }
+            Map<Long, PaperCounterDelta> deltas = new LinkedHashMap<>();
+            Map<Long, List<Object>> fields = new HashMap<>();
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                String field = entry.getKey().toString();
+                int split = field.lastIndexOf(':');
+                Long pid = Long.valueOf(field.substring(split + 1));
+                long value = Long.parseLong(entry.getValue().toString());
+                PaperCounterDelta delta = deltas.computeIfAbsent(pid, key -> new PaperCounterDelta(key, 0, 0));
+                if (PaperOutboxMapper.REF_TIMES.equals(field.substring(0, split))) {
+                    delta.setRefTimes(delta.getRefTimes() + value);
+                } else {
+                    delta.setFavTimes(delta.getFavTimes() + value);
+                }
+                fields.computeIfAbsent(pid, key -> new ArrayList<>()).add(field);
+            }
+
+            List<PaperCounterDelta> all = new ArrayList<>(deltas.values());
+            for (int i = 0; i < all.size(); i += CHUNK_SIZE) {
+                List<PaperCounterDelta> chunk = all.subList(i, Math.min(i + CHUNK_SIZE, all.size()));
+                List<Long> pids = new ArrayList<>(chunk.size());
+                List<Object> chunkFields = new ArrayList<>();
+                for (PaperCounterDelta delta : chunk) {
+                    pids.add(delta.getPid());
+                    chunkFields.addAll(fields.get(delta.getPid()));
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    paperMapper.addCounters(chunk);
+                    paperOutboxMapper.insertAll(pids, COUNTER_COLUMNS);
+                    paperDetailCache.invalidateAll(pids);
+                });
+                // 每块提交后立即删除对应的增量，中断时只有当前块可能重复计入
+                redisTool.hashDelete(FLUSHING_KEY, chunkFields.toArray());
+            }
+            log.debug("引用、收藏计数写库：{} 篇文献", all.size());
+        } catch (RuntimeException e) {
+            log.error("引用、收藏计数写库出错：{}", e.getMessage());
+        } finally {
+            redisTool.deleteIfEquals(LOCK_KEY, owner);
+        }
+    }
+
+    // pid → {引用增量, 收藏增量}，pending 和 flushing 中的增量相加
+    private Map<Long, long[]> getPending(List<Long> pids) {
+        List<String> fields = new ArrayList<>(pids.size() * 2);
+        for (Long pid : pids) {
+            fields.add(PaperOutboxMapper.REF_TIMES + ":" + pid);
+            fields.add(PaperOutboxMapper.FAV_TIMES + ":" + pid);
+        }
+        Map<Long, long[]> pending = new HashMap<>();
+        for (String key : new String[]{PENDING_KEY, FLUSHING_KEY}) {
+            List<Object> values = redisTool.hashMultiGet(key, fields);
+            if (values == null) {
+                continue;
+            }
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) != null) {
+                    long[] delta = pending.computeIfAbsent(pids.get(i / 2), pid -> new long[2]);
+                    delta[i % 2] += Long.parseLong(values.get(i).toString());
+                }
+            }
+        }
+        return pending;
+    }
+
+    private static long nullToZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,190 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.buaa01.illumineer_backend.entity.Paper;
+import com.buaa01.illumineer_backend.mapper.PaperMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 文献详情的两级缓存：进程内 Caffeine（W-TinyLFU 淘汰，按估算字节数限制总量）在前，Redis paper:detail:{pid} 在后，都未命中时查库。
+ * 文献修改、状态变更和计数写库后删除 Redis 中的条目，并通过 paper:detail:evict 频道通知所有副本（包括自己）删除进程内的条目；
+ * 在事务中修改时等事务提交后再删除，避免其他请求在提交前把旧数据重新放回缓存。
+ * 删除时同时递增文献的版本号，查库前读到的版本号已过时的回填不写入 Redis，修改前开始的查询不会把旧数据放回去。
+ * 对外返回深拷贝，调用方修改关键词、作者、引用列表不影响缓存
+ */
+@Component
+@Slf4j
+public class PaperDetailCache implements MessageListener {
+    private static final String KEY_PREFIX = "paper:detail:";
+    private static final String VERSION_SUFFIX = ":version";
+    private static final String EVICT_CHANNEL = "paper:detail:evict";
+    /** 估算每篇文献除文本外的固定开销（字节） */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    /** 进程内缓存的总大小上限（估算字节数） */
+    @Value("${paper.cache.l1.max-bytes:67108864}")
+    private long l1MaxBytes;
+
+    /** 进程内缓存的有效期（秒），兜底错过的失效通知 */
+    @Value("${paper.cache.l1.ttl:300}")
+    private long l1Ttl;
+
+    /** Redis 缓存的有效期（秒） */
+    @Value("${paper.cache.l2.ttl:3600}")
+    private long l2Ttl;
+
+    @Autowired
+    private PaperMapper paperMapper;
+    @Autowired
+    private RedisTool redisTool;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private Cache<Long, Paper> local;
+
+    @PostConstruct
+    public void init() {
+        local = Caffeine.newBuilder()
+                .maximumWeight(l1MaxBytes)
+                .weigher((Long pid, Paper paper) -> weigh(paper))
+                .expireAfterWrite(l1Ttl, TimeUnit.SECONDS)
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(EVICT_CHANNEL));
+    }
+
+    /**
+     * 获取未删除文献的详情
+     * @param pid 文献ID
+     * @return 文献的副本，调用方可以修改；不存在或已删除时返回 null
+     */
+    public Paper get(Long pid) {
+        Paper paper = local.get(pid, this::load);
+        if (paper == null) {
+            return null;
+        }
+        Paper copy = new Paper();
+        BeanUtils.copyProperties(paper, copy);
+        copy.setKeywords(paper.getKeywords() == null ? null : new ArrayList<>(paper.getKeywords()));
+        copy.setAuths(paper.getAuths() == null ? null : new LinkedHashMap<>(paper.getAuths()));
+        copy.setRefs(paper.getRefs() == null ? null : new ArrayList<>(paper.getRefs()));
+        return copy;
+    }
+
+    /**
+     * 文献已修改，提交后删除两级缓存中的条目
+     */
+    public void invalidate(Long pid) {
+        invalidateAll(Collections.singletonList(pid));
+    }
+
+    /**
+     * 一批文献已修改，提交后删除两级缓存中的条目
+     */
+    public void invalidateAll(Collection<Long> pids) {
+        if (pids.isEmpty()) {
+            return;
+        }
+        List<Long> copy = new ArrayList<>(pids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(copy);
+                }
+            });
+        } else {
+            evict(copy);
+        }
+    }
+
+    /**
+     * 收到其他副本（或自己）的失效通知，删除进程内的条目
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (String pid : body.split(",")) {
+            if (!pid.isEmpty()) {
+                local.invalidate(Long.valueOf(pid));
+            }
+        }
+    }
+
+    // 进程内未命中：先读 Redis，再查库并在版本号没变时写回 Redis；返回 null 时进程内不缓存
+    private Paper load(Long pid) {
+        String key = key(pid);
+        Paper paper = redisTool.getObjectByClass(key, Paper.class);
+        if (paper != null) {
+            return paper;
+        }
+        long version = redisTool.getVersion(versionKey(pid));
+        paper = paperMapper.getPaperDetailByPid(pid);
+        if (paper != null) {
+            redisTool.setExObjectValueIfVersion(key, paper, l2Ttl, versionKey(pid), version);
+        }
+        return paper;
+    }
+
+    // 详情和版本号用同一个 hash tag，落在同一个槽
+    private static String key(Long pid) {
+        return KEY_PREFIX + "{" + pid + "}";
+    }
+
+    private static String versionKey(Long pid) {
+        return key(pid) + VERSION_SUFFIX;
+    }
+
+    private void evict(List<Long> pids) {
+        try {
+            // 先递增版本号再删除，删除之后的回填如果是在修改前查的库就不会写入
+            redisTool.incrementVersions(pids.stream().map(PaperDetailCache::versionKey).collect(Collectors.toList()), l2Ttl);
+            redisTool.deleteValues(pids.stream().map(PaperDetailCache::key).collect(Collectors.toList()));
+            stringRedisTemplate.convertAndSend(EVICT_CHANNEL,
+                    pids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (RuntimeException e) {
+            log.error("删除文献详情缓存出错：{}", e.getMessage());
+        } finally {
+            // 通知发不出去时至少保证本副本不读到旧数据
+            local.invalidateAll(pids);
+        }
+    }
+
+    private static int weigh(Paper paper) {
+        long length = length(paper.getTitle()) + length(paper.getEssAbs()) + length(paper.getTheme())
+                + length(paper.getDerivation()) + length(paper.getCategory()) + length(paper.getContentUrl());
+        if (paper.getKeywords() != null) {
+            length += paper.getKeywords().toString().length();
+        }
+        if (paper.getAuths() != null) {
+            length += paper.getAuths().toString().length();
+        }
+        if (paper.getRefs() != null) {
+            length += paper.getRefs().size() * 8L;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, length * 2 + ENTRY_OVERHEAD);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
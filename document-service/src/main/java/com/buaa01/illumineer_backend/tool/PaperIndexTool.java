@@ -0,0 +1,302 @@
+package com.buaa01.illumineer_backend.tool;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.ReindexResponse;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexSettingsAnalysis;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import co.elastic.clients.util.ObjectBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 论文索引的版本管理：物理索引为 paper_v1、paper_v2……，检索通过别名 paper 读取，写入通过别名 paper_write。
+ * 重建时新建下一个版本并挂上别名 paper_building，重建期间的实时写入同时写到新旧两个索引，
+ * 重建完成后在一次别名更新中把 paper、paper_write 切到新索引，检索不会看到建了一半的索引。
+ * 旧版本的物理索引保留，便于回滚；最早直接命名为 paper 的物理索引在第一次切换前复制到 paper_v0 后删除，为别名让出名字。
+ * 新版本使用 paperMapping() 中的显式映射，不依赖动态映射推断字段类型。
+ * 重建期间删除的论文记录在 Redis 中，批量写入可能按删除前读到的数据把它们重新写进新索引，切换前要再删除一次
+ */
+@Component
+@Slf4j
+public class PaperIndexTool {
+    /** 检索使用的别名 */
+    public static final String READ_ALIAS = "paper";
+    /** 实时写入使用的别名 */
+    public static final String WRITE_ALIAS = "paper_write";
+    /** 正在重建的索引的别名 */
+    public static final String BUILDING_ALIAS = "paper_building";
+    private static final String VERSION_PREFIX = "paper_v";
+    /** 最早的物理索引 paper 切换前复制到的索引 */
+    private static final String LEGACY_COPY = VERSION_PREFIX + "0";
+    /** 重建期间删除的论文 pid（set） */
+    private static final String REBUILD_DELETES_KEY = "es:reindex:deleted";
+    /** 写入目标的缓存时间（毫秒） */
+    private static final long TARGET_CACHE_MILLIS = 5000;
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    private RedisTool redisTool;
+
+    /** 新建索引的主分片数 */
+    @Value("${elasticsearch.paper.shards:1}")
+    private int shards;
+
+    /** 论文索引平时的副本数 */
+    @Value("${elasticsearch.paper.replicas:1}")
+    private String replicas;
+
+    /** 论文索引平时的刷新间隔 */
+    @Value("${elasticsearch.paper.refresh-interval:1s}")
+    private String refreshInterval;
+
+    /** 论文文档（PaperDocument）的映射：筛选项聚合用 keyword 子字段，publishDate 为日期，计数为整数 */
+    public static TypeMapping paperMapping() {
+        return TypeMapping.of(m -> m
+                .properties("pid", p -> p.long_(l -> l))
+                .properties("title", p -> p.text(t -> t))
+                .properties("theme", PaperIndexTool::textWithKeyword)
+                .properties("essAbs", p -> p.text(t -> t))
+                .properties("keywords", PaperIndexTool::textWithKeyword)
+                .properties("auths", p -> p.object(o -> o.enabled(false)))
+                .properties("authNames", PaperIndexTool::textWithKeyword)
+                .properties("derivation", PaperIndexTool::textWithKeyword)
+                .properties("type", PaperIndexTool::textWithKeyword)
+                .properties("category", PaperIndexTool::textWithKeyword)
+                .properties("publishDate", p -> p.date(d -> d.format("epoch_millis||strict_date_optional_time")))
+                .properties("refTimes", p -> p.integer(i -> i))
+                .properties("favTimes", p -> p.integer(i -> i))
+                .properties("stats", p -> p.integer(i -> i))
+                .properties("contentUrl", p -> p.keyword(k -> k.index(false))));
+    }
+
+    private static ObjectBuilder<Property> textWithKeyword(Property.Builder property) {
+        return property.text(t -> t.fields("keyword", f -> f.keyword(k -> k.ignoreAbove(256))));
+    }
+
+    private volatile List<String> writeTargets;
+    private volatile long writeTargetsLoadedAt;
+
+    /**
+     * 实时写入的目标：paper_write（还没有别名时为 paper），重建期间再加上 paper_building。
+     * 结果缓存几秒，避免每次写入都查询别名
+     */
+    public List<String> getWriteTargets() {
+        long now = System.currentTimeMillis();
+        if (writeTargets == null || now - writeTargetsLoadedAt > TARGET_CACHE_MILLIS) {
+            writeTargets = loadWriteTargets();
+            writeTargetsLoadedAt = now;
+        }
+        return writeTargets;
+    }
+
+    /**
+     * 不使用缓存，重新读取写入目标；写入 paper_building 失败、说明重建已经切换时调用
+     */
+    public List<String> refreshWriteTargets() {
+        writeTargets = loadWriteTargets();
+        writeTargetsLoadedAt = System.currentTimeMillis();
+        return writeTargets;
+    }
+
+    private List<String> loadWriteTargets() {
+        List<String> targets = new ArrayList<>(2);
+        try {
+            targets.add(aliasExists(WRITE_ALIAS) ? WRITE_ALIAS : READ_ALIAS);
+            if (aliasExists(BUILDING_ALIAS)) {
+                targets.add(BUILDING_ALIAS);
+            }
+        } catch (IOException e) {
+            log.error("查询论文索引别名出错：{}", e.getMessage());
+            if (targets.isEmpty()) {
+                targets.add(READ_ALIAS);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * 是否有正在重建的索引
+     */
+    public boolean isRebuilding() throws IOException {
+        return aliasExists(BUILDING_ALIAS);
+    }
+
+    /**
+     * 开始重建：按 paperMapping() 并复制当前索引的分词设置新建下一个版本，关闭副本和自动刷新，挂上 paper_building。
+     * 已有正在重建的索引时直接继续使用它
+     * @return 新索引的名字
+     */
+    public String beginRebuild() throws IOException, InterruptedException {
+        Set<String> building = indicesOf(BUILDING_ALIAS);
+        if (!building.isEmpty()) {
+            return building.iterator().next();
+        }
+        Set<String> live = aliasExists(READ_ALIAS) ? indicesOf(READ_ALIAS) : Collections.singleton(READ_ALIAS);
+        String current = live.iterator().next();
+        int version = current.startsWith(VERSION_PREFIX) ? Integer.parseInt(current.substring(VERSION_PREFIX.length())) : 0;
+        String target = VERSION_PREFIX + (version + 1);
+        if (elasticsearchClient.indices().exists(e -> e.index(target)).value()) {
+            // 之前中断的重建留下的索引，没有别名指向它，直接删除重建
+            elasticsearchClient.indices().delete(d -> d.index(target));
+        }
+
+        IndexSettingsAnalysis analysis = analysisOf(current);
+        elasticsearchClient.indices().create(c -> c.index(target)
+                .mappings(paperMapping())
+                .settings(s -> {
+                    s.numberOfShards(String.valueOf(shards)).numberOfReplicas("0").refreshInterval(t -> t.time("-1"));
+                    if (analysis != null) {
+                        s.analysis(analysis);
+                    }
+                    return s;
+                })
+                .aliases(BUILDING_ALIAS, a -> a));
+        log.info("开始重建论文索引 {}，当前索引为 {}", target, current);
+        // 等各副本缓存的写入目标过期，之后的实时写入都会同时写到新索引
+        Thread.sleep(TARGET_CACHE_MILLIS * 2);
+        return target;
+    }
+
+    /**
+     * 重建完成：恢复新索引的副本数和刷新间隔，再在一次别名更新中把读写别名切到新索引
+     * @param target 新索引的名字
+     */
+    public void finishRebuild(String target) throws IOException {
+        elasticsearchClient.indices().putSettings(p -> p.index(target)
+                .settings(s -> s.numberOfReplicas(replicas).refreshInterval(t -> t.time(refreshInterval))));
+        elasticsearchClient.indices().refresh(r -> r.index(target));
+
+        List<Action> actions = new ArrayList<>();
+        actions.add(Action.of(a -> a.remove(r -> r.index(target).alias(BUILDING_ALIAS))));
+        Set<String> old = new HashSet<>();
+        if (aliasExists(READ_ALIAS)) {
+            for (String index : indicesOf(READ_ALIAS)) {
+                old.add(index);
+                actions.add(Action.of(a -> a.remove(r -> r.index(index).alias(READ_ALIAS))));
+            }
+        } else if (elasticsearchClient.indices().exists(e -> e.index(READ_ALIAS)).value()) {
+            // 最早的物理索引就叫 paper，删除后别名才能使用这个名字，删除前先复制一份用于回滚
+            copyLegacyIndex();
+            old.add(LEGACY_COPY);
+            actions.add(Action.of(a -> a.removeIndex(r -> r.index(READ_ALIAS))));
+        }
+        for (String index : indicesOf(WRITE_ALIAS)) {
+            actions.add(Action.of(a -> a.remove(r -> r.index(index).alias(WRITE_ALIAS))));
+        }
+        actions.add(Action.of(a -> a.add(r -> r.index(target).alias(READ_ALIAS))));
+        actions.add(Action.of(a -> a.add(r -> r.index(target).alias(WRITE_ALIAS))));
+        elasticsearchClient.indices().updateAliases(u -> u.actions(actions));
+        writeTargets = null;
+        log.info("论文索引已切换到 {}，旧索引 {} 保留", target, old);
+    }
+
+    /**
+     * 记录重建期间删除的论文，没有正在重建的索引时不记录
+     * @param pids 论文 pid
+     */
+    public void recordDeletes(Collection<Long> pids) {
+        if (!pids.isEmpty() && getWriteTargets().contains(BUILDING_ALIAS)) {
+            redisTool.addSetMembers(REBUILD_DELETES_KEY, pids);
+        }
+    }
+
+    /**
+     * 重建期间删除过的论文
+     */
+    public Set<Long> getRebuildDeletes() {
+        Set<Long> pids = new HashSet<>();
+        Set<Object> members = redisTool.getSetMembers(REBUILD_DELETES_KEY);
+        if (members != null) {
+            for (Object member : members) {
+                pids.add(((Number) member).longValue());
+            }
+        }
+        return pids;
+    }
+
+    /**
+     * 开始新的重建前、重建完成后清除删除记录
+     */
+    public void clearRebuildDeletes() {
+        redisTool.deleteKey(REBUILD_DELETES_KEY);
+    }
+
+    /**
+     * 批量写入前关闭当前写入索引的副本和自动刷新，减少写入时的段合并和副本同步
+     */
+    public void pauseRefresh() throws IOException {
+        updateSettings(getWriteTargets().get(0), "0", "-1");
+    }
+
+    /**
+     * 批量写入后恢复当前写入索引的副本数和刷新间隔，并立即刷新
+     */
+    public void resumeRefresh() throws IOException {
+        String index = getWriteTargets().get(0);
+        updateSettings(index, replicas, refreshInterval);
+        elasticsearchClient.indices().refresh(r -> r.index(index));
+    }
+
+    private void updateSettings(String index, String replicas, String refreshInterval) throws IOException {
+        elasticsearchClient.indices().putSettings(p -> p.index(index)
+                .settings(s -> s.numberOfReplicas(replicas).refreshInterval(t -> t.time(refreshInterval))));
+    }
+
+    // 按最早的 paper 索引自己的映射和设置新建 paper_v0，把文档复制过去；之前中断留下的 paper_v0 没有别名，删除重来
+    private void copyLegacyIndex() throws IOException {
+        if (elasticsearchClient.indices().exists(e -> e.index(LEGACY_COPY)).value()) {
+            elasticsearchClient.indices().delete(d -> d.index(LEGACY_COPY));
+        }
+        TypeMapping mapping = elasticsearchClient.indices().getMapping(g -> g.index(READ_ALIAS))
+                .result().values().iterator().next().mappings();
+        IndexSettingsAnalysis analysis = analysisOf(READ_ALIAS);
+        elasticsearchClient.indices().create(c -> c.index(LEGACY_COPY)
+                .mappings(mapping)
+                .settings(s -> {
+                    s.numberOfShards(String.valueOf(shards)).numberOfReplicas(replicas);
+                    if (analysis != null) {
+                        s.analysis(analysis);
+                    }
+                    return s;
+                }));
+        ReindexResponse response = elasticsearchClient.reindex(r -> r
+                .source(s -> s.index(READ_ALIAS))
+                .dest(d -> d.index(LEGACY_COPY))
+                .waitForCompletion(true)
+                .refresh(true));
+        if (!response.failures().isEmpty()) {
+            throw new IOException("复制索引 " + READ_ALIAS + " 到 " + LEGACY_COPY + " 时有 "
+                    + response.failures().size() + " 条失败");
+        }
+        log.info("已将索引 {} 的 {} 篇论文复制到 {}", READ_ALIAS, response.total(), LEGACY_COPY);
+    }
+
+    private IndexSettingsAnalysis analysisOf(String index) throws IOException {
+        IndexSettings settings = elasticsearchClient.indices().getSettings(g -> g.index(index))
+                .result().values().iterator().next().settings();
+        return settings == null ? null
+                : settings.index() != null ? settings.index().analysis() : settings.analysis();
+    }
+
+    private boolean aliasExists(String alias) throws IOException {
+        return elasticsearchClient.indices().existsAlias(e -> e.name(alias)).value();
+    }
+
+    // 别名指向的物理索引，别名不存在时为空
+    private Set<String> indicesOf(String alias) throws IOException {
+        if (!aliasExists(alias)) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(elasticsearchClient.indices().getAlias(g -> g.name(alias)).result().keySet());
+    }
+}
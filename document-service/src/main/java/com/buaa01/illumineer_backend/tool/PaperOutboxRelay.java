@@ -0,0 +1,118 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.buaa01.illumineer_backend.entity.Paper;
+import com.buaa01.illumineer_backend.entity.PaperOutbox;
+import com.buaa01.illumineer_backend.mapper.PaperMapper;
+import com.buaa01.illumineer_backend.mapper.PaperOutboxMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * 把 paper 表的变更同步到 ES：各处修改 paper 时在同一事务中向 paper_outbox 写一条记录，
+ * 这里定时按顺序领取一批记录，同一篇文章的多次变更合并为一次，读取当前行后通过一次 Bulk 请求写入 ES，成功后删除记录。
+ * 领取时对记录加锁并跳过其他副本已锁定的行，多个副本可以同时同步；写入失败的记录保留到下次重试
+ */
+@Component
+@Slf4j
+public class PaperOutboxRelay {
+    /** 只变更这些列时 ES 只更新对应字段：数据库列 → ES 字段，和 PaperDocument 的属性名一致 */
+    private static final Map<String, String> PARTIAL_FIELDS = new HashMap<>();
+
+    static {
+        PARTIAL_FIELDS.put(PaperOutboxMapper.REF_TIMES, "refTimes");
+        PARTIAL_FIELDS.put(PaperOutboxMapper.FAV_TIMES, "favTimes");
+    }
+
+    /** 每次领取的变更条数 */
+    @Value("${paper.outbox.batch-size:1000}")
+    private int batchSize;
+
+    @Autowired
+    private PaperOutboxMapper paperOutboxMapper;
+    @Autowired
+    private PaperMapper paperMapper;
+    @Autowired
+    private ElasticSearchTool elasticSearchTool;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 同步积压的变更，整批同步成功就继续领取，直到积压清空或出现失败
+     */
+    @Scheduled(fixedDelayString = "${paper.outbox.interval:1000}")
+    public void relay() {
+        try {
+            Integer count;
+            do {
+                count = transactionTemplate.execute(status -> relayBatch());
+            } while (count != null && count >= batchSize);
+        } catch (RuntimeException e) {
+            log.error("同步论文变更到ElasticSearch出错：{}", e.getMessage());
+        }
+    }
+
+    // 处理一批变更，返回同步成功的条数；记录的锁在事务提交时释放
+    private int relayBatch() {
+        List<PaperOutbox> batch = paperOutboxMapper.lockBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        // 合并同一篇文章的变更：只要有一次整行变更或非计数列的变更，就整篇写入
+        Map<Long, Set<String>> changes = new LinkedHashMap<>();
+        Set<Long> whole = new HashSet<>();
+        for (PaperOutbox change : batch) {
+            Set<String> columns = changes.computeIfAbsent(change.getPid(), pid -> new HashSet<>());
+            if (change.getChangedColumns() == null) {
+                whole.add(change.getPid());
+                continue;
+            }
+            for (String column : change.getChangedColumns().split(",")) {
+                if (!PARTIAL_FIELDS.containsKey(column)) {
+                    whole.add(change.getPid());
+                }
+                columns.add(column);
+            }
+        }
+
+        List<Paper> papers = new ArrayList<>();
+        Map<Long, Map<String, Object>> partial = new HashMap<>();
+        Set<Long> deleted = new HashSet<>(changes.keySet());
+        for (Paper paper : paperMapper.getPapersForSync(changes.keySet())) {
+            // 已删除（stats = 1）的文章从索引中移除，待审核的仍保留，和重建索引时读取的范围一致
+            if (Integer.valueOf(1).equals(paper.getStats())) {
+                continue;
+            }
+            deleted.remove(paper.getPid());
+            papers.add(paper);
+            if (!whole.contains(paper.getPid())) {
+                Map<String, Object> fields = new HashMap<>();
+                for (String column : changes.get(paper.getPid())) {
+                    fields.put(PARTIAL_FIELDS.get(column),
+                            PaperOutboxMapper.REF_TIMES.equals(column) ? paper.getRefTimes() : paper.getFavTimes());
+                }
+                partial.put(paper.getPid(), fields);
+            }
+        }
+
+        Set<Long> failed = elasticSearchTool.syncPapers(papers, partial, deleted);
+        List<Long> done = new ArrayList<>(batch.size());
+        for (PaperOutbox change : batch) {
+            if (!failed.contains(change.getPid())) {
+                done.add(change.getId());
+            }
+        }
+        if (!done.isEmpty()) {
+            paperOutboxMapper.deleteByIds(done);
+        }
+        if (!failed.isEmpty()) {
+            log.warn("{} 篇论文同步到ElasticSearch失败，下次重试", failed.size());
+        }
+        return done.size();
+    }
+}
@@ -11,7 +11,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.connection.DataType;
 import org.springframework.data.redis.core.DefaultTypedTuple;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import java.time.DayOfWeek;
@@ -20,6 +24,7 @@ import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Component
@@ -33,6 +38,25 @@ public class RedisTool {
     // 设置默认的时间单位：秒，也就是说所有的Redis相关时间操作单位都是“秒”
     public static final TimeUnit REDIS_DEFAULT_EXPIRE_TIME_UNIT = TimeUnit.SECONDS;
 
+    // 批量操作每个 pipeline 包含的命令数，避免一次缓冲过多回复
+    private static final int PIPELINE_BATCH = 1000;
+
+    // 比较并删除，保证判断和删除是原子的
+    private static final RedisScript<Long> DELETE_IF_EQUALS = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    // 比较并续期，只延长自己仍然持有的锁或租约
+    private static final RedisScript<Long> EXPIRE_IF_EQUALS = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    // 版本号（不存在时为 0）与给定版本相同时才写入，保证判断和写入是原子的
+    private static final RedisScript<Long> SET_IF_VERSION = new DefaultRedisScript<>(
+            "if (redis.call('get', KEYS[2]) or '0') == ARGV[1] then "
+                    + "redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3]) return 1 else return 0 end",
+            Long.class);
+
     // ---------------------以下是对于键key的相关操作--------------------
 
     /**
@@ -90,26 +114,6 @@ public class RedisTool {
         redisTemplate.delete(keys);
     }
 
-    /**
-     * 获取指定前缀的所有的key
-     * @param keyPrefix 前缀
-     * @return 所有前缀符合的key的集合
-     */
-    public Set<String> getKeysByPrefix(String keyPrefix){
-        return redisTemplate.keys(keyPrefix+"*");
-    }
-
-    /**
-     * 删除指定前缀的所有key的缓存
-     * @param keyPrefix 前缀
-     */
-    public void deleteByPrefix(String keyPrefix){
-        Set<String> keys = redisTemplate.keys(keyPrefix+"*");
-        if(keys!=null && !keys.isEmpty()){
-            redisTemplate.delete(keys);
-        }
-    }
-
     /**
      * 查询key是否存在于redis
      * @param key 键
@@ -376,6 +380,26 @@ public class RedisTool {
         return redisTemplate.opsForZSet().score(key, value);
     }
 
+    /**
+     * 批量查询元素的分数，通过 pipeline 一次往返完成
+     * @param key 键
+     * @param values 键key对应的集合中的元素
+     * @return 与values一一对应的分数，元素不存在时为null
+     */
+    public List<Double> getZScores(String key, List<?> values) {
+        return toDoubles(pipelined(values, (operations, value) -> operations.opsForZSet().score(key, value)));
+    }
+
+    /**
+     * 批量查询同一个元素在多个集合中的分数，通过 pipeline 一次往返完成
+     * @param keys 键
+     * @param value 元素
+     * @return 与keys一一对应的分数，集合中没有该元素时为null
+     */
+    public List<Double> getZScoresInKeys(List<String> keys, Object value) {
+        return toDoubles(pipelined(keys, (operations, key) -> operations.opsForZSet().score(key, value)));
+    }
+
     /**
      * 对某个元素增加分数
      * @param key 键
@@ -465,6 +489,17 @@ public class RedisTool {
         redisTemplate.opsForSet().add(key, value);
     }
 
+    /**
+     * 向SET中批量添加无过期时间的对象，一条 SADD 完成
+     * @param key 键
+     * @param values 对象集合
+     */
+    public void addSetMembers(String key, Collection<?> values) {
+        if (!values.isEmpty()) {
+            redisTemplate.opsForSet().add(key, values.toArray());
+        }
+    }
+
     /**
      * 删除SET中的数据
      * @param key 键
@@ -540,6 +575,17 @@ public class RedisTool {
         setExValue(key, jsonString, time, timeUnit);
     }
 
+    /**
+     * 使用指定有效期批量存储实体类，每个实体类转换成JSON后通过 pipeline 写入（SET EX），不再逐条往返
+     * @param values 键 → 实体类
+     * @param time 指定的有效期时间
+     * @param timeUnit 单位
+     */
+    public void setExObjectValues(Map<String, ?> values, long time, TimeUnit timeUnit) {
+        pipelined(new ArrayList<>(values.entrySet()), (operations, entry) ->
+                operations.opsForValue().set(entry.getKey(), JSON.toJSONString(entry.getValue()), time, timeUnit));
+    }
+
     /**
      * 使用 默认有效期 和 默认时间单位（秒） 存储简单数据类型
      * @param key 键
@@ -599,6 +645,23 @@ public class RedisTool {
         return null;
     }
 
+    /**
+     * 根据传入的类型批量获取实体类，一条 MGET 完成
+     * @param keys 键
+     * @param clazz 实体类的类型
+     * @return 与keys一一对应的实体类，键不存在时为null
+     */
+    public <T> List<T> multiGetObjects(List<String> keys, Class<T> clazz) {
+        List<T> objects = new ArrayList<>(keys.size());
+        List<Object> values = keys.isEmpty() ? null : redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = values == null ? null : values.get(i);
+            objects.add(value == null || StringUtils.isBlank(value.toString())
+                    ? null : JSONObject.parseObject(value.toString(), clazz));
+        }
+        return objects;
+    }
+
     /**
      * 删除简单数据类型或实体类
      * @param key 键
@@ -636,6 +699,78 @@ public class RedisTool {
         redisTemplate.opsForValue().decrement(key, 1);
     }
 
+    /**
+     * 键不存在时才写入，并设置存活时间，用作分布式锁或租约
+     * @param key 键
+     * @param value 值，一般为持有者标识
+     * @param time 存活时间（秒）
+     * @return 是否写入成功
+     */
+    public boolean setIfAbsent(String key, Object value, long time) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, time, REDIS_DEFAULT_EXPIRE_TIME_UNIT));
+    }
+
+    /**
+     * 值与给定值相同时才删除，用于释放自己持有的锁或租约，不会误删已经过期后被别人重新获取的锁
+     * @param key 键
+     * @param value 持有者标识
+     * @return 是否删除
+     */
+    public boolean deleteIfEquals(String key, Object value) {
+        Long deleted = redisTemplate.execute(DELETE_IF_EQUALS, Collections.singletonList(key), value);
+        return deleted != null && deleted > 0;
+    }
+
+    /**
+     * 值与给定值相同时才重新设置存活时间，用于续期自己持有的锁或租约，已经被别人持有时不续期
+     * @param key 键
+     * @param value 持有者标识
+     * @param time 存活时间（秒）
+     * @return 是否续期，false 表示已经失去该锁或租约
+     */
+    public boolean expireIfEquals(String key, Object value, long time) {
+        Long renewed = redisTemplate.execute(EXPIRE_IF_EQUALS, Collections.singletonList(key), value, time);
+        return renewed != null && renewed > 0;
+    }
+
+    /**
+     * 读取版本号
+     * @param key 版本号的键
+     * @return 版本号，键不存在时为 0
+     */
+    public long getVersion(String key) {
+        Object version = redisTemplate.opsForValue().get(key);
+        return version == null ? 0 : ((Number) version).longValue();
+    }
+
+    /**
+     * 批量递增版本号并设置存活时间，通过 pipeline 写入
+     * @param keys 版本号的键
+     * @param time 存活时间（秒），应长于一次缓存回填的耗时
+     */
+    public void incrementVersions(Collection<String> keys, long time) {
+        pipelined(new ArrayList<>(keys), (operations, key) -> {
+            operations.opsForValue().increment(key, 1);
+            operations.expire(key, time, REDIS_DEFAULT_EXPIRE_TIME_UNIT);
+        });
+    }
+
+    /**
+     * 版本号仍是 version 时才存储实体类（转换成JSON）并设置存活时间，用于回填缓存：
+     * 数据修改后递增版本号，回填前读到的版本号已过时，说明查到的可能是旧数据，不再写入
+     * @param key 键，和 versionKey 使用相同的 hash tag，集群模式下才能在一个脚本中访问
+     * @param value 实体类
+     * @param time 存活时间（秒）
+     * @param versionKey 版本号的键
+     * @param version 查询数据前读到的版本号
+     * @return 是否写入
+     */
+    public boolean setExObjectValueIfVersion(String key, Object value, long time, String versionKey, long version) {
+        Long written = redisTemplate.execute(SET_IF_VERSION, Arrays.asList(key, versionKey),
+                version, JSON.toJSONString(value), time);
+        return written != null && written > 0;
+    }
+
     //--------------------字符串String/单个实体对象存储相关操作结束--------------------
 
     //--------------------哈希存储相关操作开始--------------------
@@ -684,6 +819,21 @@ public class RedisTool {
         return null;
     }
 
+    /**
+     * 一次获取map中多个hashKey对应的数据
+     * @param key 键
+     * @param hashKeys 哈希键
+     * @return 与hashKeys顺序一致的值，不存在的为null
+     */
+    public List<Object> hashMultiGet(String key, Collection<String> hashKeys) {
+        try {
+            return redisTemplate.opsForHash().multiGet(key, new ArrayList<Object>(hashKeys));
+        } catch (Exception e) {
+            log.error(e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * 把map存到redis中
      * @param key 键
@@ -713,10 +863,40 @@ public class RedisTool {
         return redisTemplate.opsForHash().delete(key, hashKeys);
     }
 
+    /**
+     * 把map中指定hashKey的值加上delta，不存在时从0开始
+     * @param key 键
+     * @param hashKey 哈希键
+     * @param delta 增量
+     * @return 增加后的值
+     */
+    public Long hashIncrement(String key, String hashKey, long delta) {
+        return redisTemplate.opsForHash().increment(key, hashKey, delta);
+    }
+
     //--------------------哈希存储相关操作结束--------------------
 
     //--------------------List相关操作开始--------------------
 
+    /**
+     * 依次添加到list尾部
+     * @param key 键
+     * @param values 值
+     * @return 添加后list的长度
+     */
+    public Long listRightPushAll(String key, Collection<?> values) {
+        return redisTemplate.opsForList().rightPushAll(key, new ArrayList<Object>(values));
+    }
+
+    /**
+     * 取出并删除list的第一个元素
+     * @param key 键
+     * @return 第一个元素，list为空时返回null
+     */
+    public Object listLeftPop(String key) {
+        return redisTemplate.opsForList().leftPop(key);
+    }
+
     /**
      * 获取list中全部数据
      * @param key 键
@@ -802,4 +982,31 @@ public class RedisTool {
         log.info("本周剩余秒数：{}", remainTime);
         redisTemplate.opsForValue().set(key, value, remainTime, TimeUnit.SECONDS);
     }
+
+    // 按 PIPELINE_BATCH 分批，每批在一个 pipeline 中对每个元素执行一条命令，返回与items一一对应的结果
+    private <T> List<Object> pipelined(List<T> items, BiConsumer<RedisOperations<String, Object>, T> command) {
+        List<Object> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i += PIPELINE_BATCH) {
+            List<T> batch = items.subList(i, Math.min(i + PIPELINE_BATCH, items.size()));
+            results.addAll(redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    for (T item : batch) {
+                        command.accept((RedisOperations<String, Object>) operations, item);
+                    }
+                    return null;
+                }
+            }));
+        }
+        return results;
+    }
+
+    private static List<Double> toDoubles(List<Object> results) {
+        List<Double> scores = new ArrayList<>(results.size());
+        for (Object result : results) {
+            scores.add(result == null ? null : ((Number) result).doubleValue());
+        }
+        return scores;
+    }
 }
@@ -0,0 +1,124 @@
+package com.buaa01.illumineer_backend.tool;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+/**
+ * 可断点续传的 HTTP 下载流：读取中途连接断开时，用 Range 请求从已读取的位置继续，
+ * 并带上 If-Range，文件在此期间发生变化时不会拼接出错误的数据
+ */
+@Slf4j
+public class ResumableHttpInputStream extends InputStream {
+    /** 单个文件最多重连的次数 */
+    private static final int MAX_RETRIES = 5;
+
+    private final String url;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private HttpURLConnection conn;
+    private InputStream in;
+    private int retries;
+
+    /** 已读取的字节数 */
+    @Getter
+    private long position;
+
+    /** 文件的 ETag，作为文件内容的校验值 */
+    @Getter
+    private String etag;
+
+    public ResumableHttpInputStream(String url, int connectTimeout, int readTimeout) throws IOException {
+        this.url = url;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        open();
+    }
+
+    private void open() throws IOException {
+        conn = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        if (position > 0) {
+            conn.setRequestProperty("Range", "bytes=" + position + "-");
+            if (etag != null) {
+                conn.setRequestProperty("If-Range", etag);
+            }
+        }
+        int responseCode = conn.getResponseCode();
+        if (position > 0 && responseCode != HttpURLConnection.HTTP_PARTIAL) {
+            conn.disconnect();
+            throw new IOException("无法从断点继续下载 " + url + "，HTTP " + responseCode);
+        }
+        if (position == 0 && responseCode != HttpURLConnection.HTTP_OK) {
+            conn.disconnect();
+            throw new IOException("下载 " + url + " 失败，HTTP " + responseCode);
+        }
+        if (etag == null) {
+            etag = conn.getHeaderField("ETag");
+        }
+        in = conn.getInputStream();
+    }
+
+    // 连接断开后从当前位置重新请求
+    private void reopen(IOException cause) throws IOException {
+        if (++retries > MAX_RETRIES) {
+            throw cause;
+        }
+        log.warn("{} 在第 {} 字节处中断（{}），第 {} 次续传", url, position, cause.getMessage(), retries);
+        closeQuietly();
+        open();
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            try {
+                int b = in.read();
+                if (b >= 0) {
+                    position++;
+                }
+                return b;
+            } catch (IOException e) {
+                reopen(e);
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        while (true) {
+            try {
+                int n = in.read(b, off, len);
+                if (n > 0) {
+                    position += n;
+                }
+                return n;
+            } catch (IOException e) {
+                reopen(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        try {
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException ignored) {
+            // 连接已经断开
+        }
+        if (conn != null) {
+            conn.disconnect();
+        }
+    }
+}
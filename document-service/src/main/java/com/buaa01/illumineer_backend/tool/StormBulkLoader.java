@@ -0,0 +1,170 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.alibaba.fastjson2.JSON;
+import com.buaa01.illumineer_backend.mapper.StormMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 从本地 OpenAlex 快照目录批量导入 works，用于新环境的初始化：
+ * 不做逐条的存在性检查，大批量写入 MySQL 和 ES；导入前删除 paper 表的普通索引和全文索引、关闭 ES 副本和自动刷新，
+ * 导入完成后统一重建。删除的索引定义先保存在 Redis，导入中途宕机时下次导入仍能按原定义重建
+ */
+@Component
+@Slf4j
+public class StormBulkLoader {
+    private static final String INDEX_DDL_KEY = "storm:bulk:indexes";
+    /** 建表语句中的普通索引和全文索引，唯一索引是约束，不删除 */
+    private static final Pattern SECONDARY_INDEX = Pattern.compile("^\\s*((?:FULLTEXT )?KEY) `([^`]+)` (.+?),?$");
+
+    /** 每次写库的最大条数 */
+    @Value("${storm.bulk.batch-size:2000}")
+    private int batchSize;
+
+    /** 允许导入的快照所在的目录，导入目录必须在它之下 */
+    @Value("${storm.bulk.base-dir:/data/openalex}")
+    private String baseDir;
+
+    /** 导入期间是否删除二级索引，导入完成后重建 */
+    @Value("${storm.bulk.rebuild-indexes:true}")
+    private boolean rebuildIndexes;
+
+    @Autowired
+    private StormPipeline stormPipeline;
+    @Autowired
+    private StormTool stormTool;
+    @Autowired
+    private StormMapper stormMapper;
+    @Autowired
+    private ElasticSearchTool elasticSearchTool;
+    @Autowired
+    private PaperIndexTool paperIndexTool;
+    @Autowired
+    private RedisTool redisTool;
+
+    /**
+     * 把请求中的目录解析到 storm.bulk.base-dir 之下，解析符号链接后仍须在其中
+     * @param dir 相对于 storm.bulk.base-dir 的目录，如 data/works
+     * @return 目录的真实路径，不存在或不在 storm.bulk.base-dir 之下时返回null
+     */
+    public Path resolveDir(String dir) {
+        try {
+            Path base = Paths.get(baseDir).toRealPath();
+            Path root = base.resolve(dir).normalize().toRealPath();
+            return root.startsWith(base) && Files.isDirectory(root) ? root : null;
+        } catch (IOException | InvalidPathException e) {
+            log.warn("快照目录 {} 无效：{}", dir, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 导入目录下（包括子目录）所有的 .gz 文件
+     * @param dir 快照目录，相对于 storm.bulk.base-dir
+     * @return 新增的文献数
+     */
+    public int load(String dir) throws IOException {
+        Path root = resolveDir(dir);
+        if (root == null) {
+            throw new IllegalArgumentException("快照目录不存在或不在 " + baseDir + " 之下：" + dir);
+        }
+        List<StormPipeline.Part> parts;
+        try (Stream<Path> files = Files.walk(root)) {
+            parts = files.filter(path -> Files.isRegularFile(path) && path.toString().endsWith(".gz"))
+                    .sorted()
+                    .map(path -> new StormPipeline.Part(root.relativize(path).toString(), path.toUri().toString(),
+                            null, 0, 0))
+                    .collect(Collectors.toList());
+        }
+        if (parts.isEmpty()) {
+            log.warn("{} 下没有 .gz 文件", dir);
+            return 0;
+        }
+        log.info("开始批量导入 {}：共 {} 个文件", dir, parts.size());
+
+        List<String> indexes = dropSecondaryIndexes();
+        paperIndexTool.pauseRefresh();
+        AtomicLong indexed = new AtomicLong();
+        try {
+            // 插入语句是 insert ignore，重复的pid由数据库忽略，不再逐批查库；
+            // ES 同样只新建文档，库中已有的论文保留原来的文档，不被快照中的数据覆盖
+            return stormPipeline.run(parts, stormTool::parse, batch -> {
+                int inserted = stormMapper.insertPapers(batch);
+                indexed.addAndGet(elasticSearchTool.bulkCreatePapers(batch));
+                return inserted;
+            }, part -> log.info("{} 已导入 {} 行", part.getName(), part.getCommittedLines()), batchSize);
+        } finally {
+            log.info("写入完成，ES 写入 {} 篇，开始重建索引", indexed.get());
+            restoreSecondaryIndexes(indexes);
+            paperIndexTool.resumeRefresh();
+            log.info("批量导入 {} 完成", dir);
+        }
+    }
+
+    // 删除 paper 表的二级索引，返回重建用的 add 子句
+    private List<String> dropSecondaryIndexes() {
+        if (!rebuildIndexes) {
+            return Collections.emptyList();
+        }
+        String saved = redisTool.getObjectString(INDEX_DDL_KEY);
+        if (saved != null) {
+            // 上次导入没有完成，索引已经删除，沿用保存的定义
+            return JSON.parseArray(saved, String.class);
+        }
+        List<String> adds = new ArrayList<>();
+        List<String> drops = new ArrayList<>();
+        String createTable = stormMapper.showCreatePaper().get("Create Table").toString();
+        for (String line : createTable.split("\n")) {
+            Matcher matcher = SECONDARY_INDEX.matcher(line);
+            if (matcher.matches()) {
+                adds.add("add " + matcher.group(1) + " `" + matcher.group(2) + "` " + matcher.group(3));
+                drops.add("drop index `" + matcher.group(2) + "`");
+            }
+        }
+        if (drops.isEmpty()) {
+            return adds;
+        }
+        redisTool.setObjectValue(INDEX_DDL_KEY, adds);
+        stormMapper.alterPaper(String.join(", ", drops));
+        log.info("已删除 paper 表的 {} 个二级索引", drops.size());
+        return adds;
+    }
+
+    // 普通索引合并成一条语句重建，只扫描一遍表；InnoDB 一条语句只能新建一个全文索引，全文索引逐个重建
+    private void restoreSecondaryIndexes(List<String> adds) {
+        if (adds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        List<String> fulltextKeys = new ArrayList<>();
+        for (String add : adds) {
+            (add.startsWith("add FULLTEXT") ? fulltextKeys : keys).add(add);
+        }
+        try {
+            if (!keys.isEmpty()) {
+                stormMapper.alterPaper(String.join(", ", keys));
+            }
+            for (String add : fulltextKeys) {
+                stormMapper.alterPaper(add);
+            }
+            redisTool.deleteValue(INDEX_DDL_KEY);
+            log.info("已重建 paper 表的 {} 个二级索引", adds.size());
+        } catch (RuntimeException e) {
+            log.error("重建 paper 表索引失败，索引定义保存在 {}：{}", INDEX_DDL_KEY, e.getMessage());
+        }
+    }
+}
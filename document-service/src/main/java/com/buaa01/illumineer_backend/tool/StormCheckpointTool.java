@@ -0,0 +1,60 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.alibaba.fastjson2.JSON;
+import com.buaa01.illumineer_backend.entity.StormPartCheckpoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * OpenAlex 导入进度的持久化：
+ * storm:watermark 为已全部导入的最新 updated_date；
+ * storm:checkpoint:{updated_date} 为该分区各 part 文件的进度（hash，文件名 → 进度JSON），分区导入完成后删除
+ */
+@Component
+public class StormCheckpointTool {
+    private static final String WATERMARK_KEY = "storm:watermark";
+    private static final String CHECKPOINT_PREFIX = "storm:checkpoint:";
+
+    /** 没有水位线时的起始日期 */
+    @Value("${storm.initial-watermark:2024-11-25}")
+    private String initialWatermark;
+
+    @Autowired
+    private RedisTool redisTool;
+
+    public String getWatermark() {
+        Object watermark = redisTool.getValue(WATERMARK_KEY);
+        return watermark == null ? initialWatermark : watermark.toString();
+    }
+
+    public void setWatermark(String updatedDate) {
+        redisTool.setValue(WATERMARK_KEY, updatedDate);
+    }
+
+    /**
+     * @return 文件名 → 进度
+     */
+    public Map<String, StormPartCheckpoint> getCheckpoints(String updatedDate) {
+        Map<String, StormPartCheckpoint> checkpoints = new HashMap<>();
+        Map<Object, Object> values = redisTool.hashGet(CHECKPOINT_PREFIX + updatedDate);
+        if (values != null) {
+            for (Map.Entry<Object, Object> entry : values.entrySet()) {
+                checkpoints.put(entry.getKey().toString(),
+                        JSON.parseObject(entry.getValue().toString(), StormPartCheckpoint.class));
+            }
+        }
+        return checkpoints;
+    }
+
+    public void save(String updatedDate, StormPartCheckpoint checkpoint) {
+        redisTool.hashPut(CHECKPOINT_PREFIX + updatedDate, checkpoint.getName(), JSON.toJSONString(checkpoint));
+    }
+
+    public void clear(String updatedDate) {
+        redisTool.deleteKey(CHECKPOINT_PREFIX + updatedDate);
+    }
+}
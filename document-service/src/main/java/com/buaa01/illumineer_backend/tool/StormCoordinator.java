@@ -0,0 +1,279 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.buaa01.illumineer_backend.entity.StormPartCheckpoint;
+import com.buaa01.illumineer_backend.utils.PidBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 多副本协同导入 OpenAlex：
+ * 各副本同时触发定时任务，抢到 storm:leader 的副本成为主节点，按日期顺序把水位线之后每个分区未完成的 part 放入队列；
+ * 所有副本（包括主节点）从队列中领取 part，领取时加租约，处理期间定期续约，副本宕机后租约过期，由主节点重新放回队列。
+ * 主节点锁和租约都由 storm-lease 线程续期，续期前比较持有者，不会延长已经被其他副本重新获取的锁或租约。
+ * 每个 part 同一时间只有一个副本处理，各副本的新增条数记在 storm:progress:{updated_date}
+ */
+@Component
+@Slf4j
+public class StormCoordinator {
+    private static final String LEADER_KEY = "storm:leader";
+    /** 当前正在导入的分区 */
+    private static final String RUN_KEY = "storm:run";
+    /** 待领取的 part 下载地址（list） */
+    private static final String QUEUE_PREFIX = "storm:queue:";
+    /** part 的租约，storm:lease:{updated_date}:{文件名} → 持有者 */
+    private static final String LEASE_PREFIX = "storm:lease:";
+    /** part 被领取的次数（hash，文件名 → 次数） */
+    private static final String ATTEMPTS_PREFIX = "storm:attempts:";
+    /** 各副本的新增条数（hash，副本 → 条数） */
+    private static final String PROGRESS_PREFIX = "storm:progress:";
+
+    /** 本副本的标识 */
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+
+    /** 主节点锁的有效期（秒），主节点处理过程中由续约线程不断续期 */
+    @Value("${storm.leader.seconds:1800}")
+    private long leaderSeconds;
+
+    /** part 租约的有效期（秒） */
+    @Value("${storm.lease.seconds:300}")
+    private long leaseSeconds;
+
+    /** 每次领取的 part 数，不大于0时等于同时下载的文件数 */
+    @Value("${storm.claim-size:0}")
+    private int claimSize;
+
+    /** 同时下载的 part 文件数 */
+    @Value("${storm.pipeline.downloads:4}")
+    private int downloadThreads;
+
+    /** 一个 part 最多被领取的次数，超过后本轮不再重试 */
+    @Value("${storm.max-attempts:3}")
+    private int maxAttempts;
+
+    /** 等待其他副本时的轮询间隔（毫秒） */
+    @Value("${storm.poll-interval:5000}")
+    private long pollInterval;
+
+    @Autowired
+    private RedisTool redisTool;
+    @Autowired
+    private StormTool stormTool;
+    @Autowired
+    private StormCheckpointTool stormCheckpointTool;
+
+    /** 正在持有的租约，由续约线程定期延长 */
+    private final Set<String> heldLeases = ConcurrentHashMap.newKeySet();
+
+    /** 本副本是否持有主节点锁，由续约线程定期延长 */
+    private volatile boolean leading;
+
+    /** 布隆过滤器在一次导入中复用，避免每次领取都全表扫描 */
+    private PidBloomFilter existing;
+
+    /**
+     * 参与一次导入
+     * @return 本副本新增的文献数
+     */
+    public int run() throws Exception {
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storm-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Math.min(leaseSeconds, leaderSeconds) / 3);
+        heartbeat.scheduleAtFixedRate(this::renewLeases, period, period, TimeUnit.SECONDS);
+        try {
+            if (redisTool.setIfAbsent(LEADER_KEY, owner, leaderSeconds)) {
+                log.info("{} 成为导入主节点", owner);
+                leading = true;
+                try {
+                    return lead();
+                } finally {
+                    // 主节点锁已被其他副本取得时，storm:run 属于新的主节点，不能删除
+                    if (leading && owner.equals(redisTool.getValue(LEADER_KEY))) {
+                        redisTool.deleteValue(RUN_KEY);
+                    }
+                    leading = false;
+                    redisTool.deleteIfEquals(LEADER_KEY, owner);
+                }
+            }
+            return follow();
+        } finally {
+            heartbeat.shutdownNow();
+            existing = null;
+        }
+    }
+
+    // 主节点：按日期顺序分发每个分区，全部完成才推进水位线，否则停下等下次继续；失去主节点锁时立即停止
+    private int lead() throws Exception {
+        int inserted = 0;
+        String watermark = stormCheckpointTool.getWatermark();
+        for (String updatedDate : stormTool.listUpdatedDates()) {
+            if (updatedDate.compareTo(watermark) <= 0) {
+                continue;
+            }
+            checkLeading(updatedDate);
+            List<String> partUrls = stormTool.listParts(updatedDate);
+            redisTool.deleteKey(QUEUE_PREFIX + updatedDate);
+            redisTool.deleteKey(ATTEMPTS_PREFIX + updatedDate);
+            List<String> pending = pending(updatedDate, partUrls);
+            if (!pending.isEmpty()) {
+                redisTool.listRightPushAll(QUEUE_PREFIX + updatedDate, pending);
+            }
+            redisTool.setValue(RUN_KEY, updatedDate);
+            log.info("开始导入 {}：共 {} 个文件，待导入 {} 个", updatedDate, partUrls.size(), pending.size());
+
+            inserted += work(updatedDate);
+            // 队列领完后等其他副本手上的 part 结束；失败或租约过期的 part 放回队列
+            while (true) {
+                checkLeading(updatedDate);
+                List<String> retry = new ArrayList<>();
+                boolean busy = false;
+                for (String partUrl : pending(updatedDate, partUrls)) {
+                    if (redisTool.isExist(leaseKey(updatedDate, partUrl))) {
+                        busy = true;
+                    } else if (attempts(updatedDate, partUrl) < maxAttempts) {
+                        retry.add(partUrl);
+                    }
+                }
+                if (!retry.isEmpty()) {
+                    redisTool.listRightPushAll(QUEUE_PREFIX + updatedDate, retry);
+                    inserted += work(updatedDate);
+                } else if (busy) {
+                    Thread.sleep(pollInterval);
+                } else {
+                    break;
+                }
+            }
+
+            if (!stormTool.isImported(updatedDate, partUrls)) {
+                log.warn("{} 有文件多次导入失败，停止在此分区，下次从进度继续", updatedDate);
+                break;
+            }
+            checkLeading(updatedDate);
+            log.info("{} 导入完成，各副本新增：{}", updatedDate, redisTool.hashGet(PROGRESS_PREFIX + updatedDate));
+            stormCheckpointTool.setWatermark(updatedDate);
+            stormCheckpointTool.clear(updatedDate);
+            redisTool.deleteKey(QUEUE_PREFIX + updatedDate);
+            redisTool.deleteKey(ATTEMPTS_PREFIX + updatedDate);
+            redisTool.deleteKey(PROGRESS_PREFIX + updatedDate);
+        }
+        return inserted;
+    }
+
+    // 续约线程发现主节点锁已失效时，新的主节点可能已经在分发，本副本不能再放回 part 或推进水位线
+    private void checkLeading(String updatedDate) {
+        if (!leading) {
+            throw new IllegalStateException(owner + " 已失去主节点锁，停止分发 " + updatedDate);
+        }
+    }
+
+    // 其他副本：主节点在时持续领取当前分区的 part
+    private int follow() throws InterruptedException {
+        int inserted = 0;
+        while (redisTool.isExist(LEADER_KEY)) {
+            Object updatedDate = redisTool.getValue(RUN_KEY);
+            if (updatedDate != null) {
+                inserted += work(updatedDate.toString());
+            }
+            Thread.sleep(pollInterval);
+        }
+        return inserted;
+    }
+
+    // 领取并导入 part，直到队列为空
+    private int work(String updatedDate) {
+        int inserted = 0;
+        while (true) {
+            List<String> claimed = claim(updatedDate);
+            if (claimed.isEmpty()) {
+                return inserted;
+            }
+            try {
+                int count = stormTool.importParts(updatedDate, claimed, getExisting());
+                redisTool.hashIncrement(PROGRESS_PREFIX + updatedDate, owner, count);
+                inserted += count;
+                log.info("{} 完成 {} 个文件，新增 {} 篇", owner, claimed.size(), count);
+            } finally {
+                for (String partUrl : claimed) {
+                    String leaseKey = leaseKey(updatedDate, partUrl);
+                    heldLeases.remove(leaseKey);
+                    redisTool.deleteIfEquals(leaseKey, owner);
+                }
+            }
+        }
+    }
+
+    // 从队列取 part 并加租约；已被其他副本持有的跳过
+    private List<String> claim(String updatedDate) {
+        int size = claimSize > 0 ? claimSize : downloadThreads;
+        List<String> claimed = new ArrayList<>(size);
+        while (claimed.size() < size) {
+            Object partUrl = redisTool.listLeftPop(QUEUE_PREFIX + updatedDate);
+            if (partUrl == null) {
+                break;
+            }
+            String leaseKey = leaseKey(updatedDate, partUrl.toString());
+            if (redisTool.setIfAbsent(leaseKey, owner, leaseSeconds)) {
+                heldLeases.add(leaseKey);
+                redisTool.hashIncrement(ATTEMPTS_PREFIX + updatedDate, StormTool.partName(partUrl.toString()), 1);
+                claimed.add(partUrl.toString());
+            }
+        }
+        return claimed;
+    }
+
+    // 续约线程：续期主节点锁和持有的租约；已失去的租约不再续期，part 由取得租约的副本或主节点重新处理
+    private void renewLeases() {
+        try {
+            if (leading && !redisTool.expireIfEquals(LEADER_KEY, owner, leaderSeconds)) {
+                leading = false;
+                log.warn("{} 的主节点锁已失效", owner);
+            }
+            for (String leaseKey : heldLeases) {
+                if (!redisTool.expireIfEquals(leaseKey, owner, leaseSeconds)) {
+                    heldLeases.remove(leaseKey);
+                    log.warn("{} 的租约 {} 已失效", owner, leaseKey);
+                }
+            }
+        } catch (RuntimeException e) {
+            // 异常会取消定时任务，这里只记录，下个周期继续续期
+            log.error("续期导入租约出错：{}", e.getMessage());
+        }
+    }
+
+    // 尚未完成的 part
+    private List<String> pending(String updatedDate, List<String> partUrls) {
+        Map<String, StormPartCheckpoint> checkpoints = stormCheckpointTool.getCheckpoints(updatedDate);
+        List<String> pending = new ArrayList<>();
+        for (String partUrl : partUrls) {
+            StormPartCheckpoint checkpoint = checkpoints.get(StormTool.partName(partUrl));
+            if (checkpoint == null || !Boolean.TRUE.equals(checkpoint.getDone())) {
+                pending.add(partUrl);
+            }
+        }
+        return pending;
+    }
+
+    private long attempts(String updatedDate, String partUrl) {
+        Object attempts = redisTool.hashGet(ATTEMPTS_PREFIX + updatedDate, StormTool.partName(partUrl));
+        return attempts == null ? 0 : Long.parseLong(attempts.toString());
+    }
+
+    private synchronized PidBloomFilter getExisting() {
+        if (existing == null) {
+            existing = stormTool.loadExistingPids();
+        }
+        return existing;
+    }
+
+    private static String leaseKey(String updatedDate, String partUrl) {
+        return LEASE_PREFIX + updatedDate + ":" + StormTool.partName(partUrl);
+    }
+}
@@ -0,0 +1,373 @@
+package com.buaa01.illumineer_backend.tool;
+
+import com.buaa01.illumineer_backend.entity.Paper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * OpenAlex 数据的流式导入：下载 → GZIP 解压 → 按行切分 → 解析 → 写库，全程在内存中流转，不落盘。
+ * 各阶段之间用有界队列连接，下游处理不过来时上游阻塞等待；多个 part 文件同时下载，解析线程数默认等于CPU核数。
+ * 各阶段使用独立的线程池：阶段之间互相等待，放进共享的 taskExecutor 可能因线程不足而互相卡死。
+ * 每个 part 记录连续已提交的行数，重启后跳过这些行，下载中断时按 Range 续传；part 地址为 file: 时读取本地文件
+ */
+@Component
+@Slf4j
+public class StormPipeline {
+    /** 行队列的结束标记，按引用比较 */
+    private static final Line END_OF_LINES = new Line(null, -1, null);
+    /** 文献队列的结束标记，按引用比较 */
+    private static final Parsed END_OF_PAPERS = new Parsed(null, -1, null);
+    /** 下载和解压的缓冲区大小 */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** 同时下载的 part 文件数 */
+    @Value("${storm.pipeline.downloads:4}")
+    private int downloadThreads;
+
+    /** 解析线程数，不大于0时取CPU核数 */
+    @Value("${storm.pipeline.parsers:0}")
+    private int parserThreads;
+
+    /** 写库线程数 */
+    @Value("${storm.pipeline.writers:4}")
+    private int writerThreads;
+
+    /** 每次写库的最大条数 */
+    @Value("${storm.pipeline.batch-size:500}")
+    private int batchSize;
+
+    /** 每个队列的容量 */
+    @Value("${storm.pipeline.queue-size:10000}")
+    private int queueSize;
+
+    /** 连接超时（毫秒） */
+    @Value("${storm.pipeline.connect-timeout:30000}")
+    private int connectTimeout;
+
+    /** 读取超时（毫秒） */
+    @Value("${storm.pipeline.read-timeout:300000}")
+    private int readTimeout;
+
+    /** 同一个 part 保存进度的最小间隔（毫秒） */
+    @Value("${storm.checkpoint.interval:5000}")
+    private long checkpointInterval;
+
+    /**
+     * 一个 part 文件及其导入进度
+     */
+    public static class Part {
+        @Getter
+        private final String name;
+        @Getter
+        private final String url;
+        /** 文件的 ETag，与上次记录的不一致时从头导入 */
+        @Getter
+        private volatile String etag;
+        /** 已下载的字节数 */
+        @Getter
+        private volatile long bytes;
+        /** 本次从第几行开始导入，之前的行已经提交 */
+        private long startLine;
+        /** 连续已提交的行数 */
+        private long committed;
+        /** 本次导入中已完成的行，下标为相对 startLine 的行号 */
+        private final BitSet completed = new BitSet();
+        /** 文件读完后的总行数，未读完时为 -1 */
+        private volatile long totalLines = -1;
+        private long lastSaved;
+
+        public Part(String name, String url, String etag, long committedLines, long bytes) {
+            this.name = name;
+            this.url = url;
+            this.etag = etag;
+            this.startLine = committedLines;
+            this.committed = committedLines;
+            this.bytes = bytes;
+        }
+
+        public synchronized long getCommittedLines() {
+            return committed;
+        }
+
+        /** 文件已读完并且所有行都已提交 */
+        public synchronized boolean isDone() {
+            return totalLines >= 0 && committed >= totalLines;
+        }
+
+        synchronized long getStartLine() {
+            return startLine;
+        }
+
+        // 文件发生了变化，之前的进度作废
+        synchronized void restart(String newEtag) {
+            etag = newEtag;
+            startLine = 0;
+            committed = 0;
+            completed.clear();
+        }
+
+        synchronized void complete(long line) {
+            completed.set((int) (line - startLine));
+            while (completed.get((int) (committed - startLine))) {
+                committed++;
+            }
+        }
+
+        // 距上次保存超过间隔时返回true
+        synchronized boolean checkpointDue(long now, long interval) {
+            if (now - lastSaved < interval) {
+                return false;
+            }
+            lastSaved = now;
+            return true;
+        }
+    }
+
+    private static class Line {
+        final Part part;
+        final long number;
+        final String text;
+
+        Line(Part part, long number, String text) {
+            this.part = part;
+            this.number = number;
+            this.text = text;
+        }
+    }
+
+    private static class Parsed {
+        final Part part;
+        final long number;
+        final Paper paper;
+
+        Parsed(Part part, long number, Paper paper) {
+            this.part = part;
+            this.number = number;
+            this.paper = paper;
+        }
+    }
+
+    /**
+     * 导入一批 part 文件
+     * @param parts      待导入的 part 文件
+     * @param parser     把一行 JSON 解析为文献，解析失败返回null
+     * @param writer     批量写入文献，每批不超过 batchSize 条，返回新增的条数
+     * @param checkpoint 保存某个 part 的进度，写入过程中定期调用，结束时对每个 part 再调用一次
+     * @return 新增的文献数
+     */
+    public int run(List<Part> parts, Function<String, Paper> parser, Function<List<Paper>, Integer> writer,
+                   Consumer<Part> checkpoint) {
+        return run(parts, parser, writer, checkpoint, batchSize);
+    }
+
+    /**
+     * 导入一批 part 文件，使用指定的每批条数
+     * @param batchSize 每次写库的最大条数
+     */
+    public int run(List<Part> parts, Function<String, Paper> parser, Function<List<Paper>, Integer> writer,
+                   Consumer<Part> checkpoint, int batchSize) {
+        int parsers = parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors();
+        BlockingQueue<Line> lines = new ArrayBlockingQueue<>(queueSize);
+        BlockingQueue<Parsed> papers = new ArrayBlockingQueue<>(queueSize);
+        AtomicInteger written = new AtomicInteger();
+
+        ExecutorService downloadPool = Executors.newFixedThreadPool(downloadThreads, namedThreads("storm-download-"));
+        ExecutorService parserPool = Executors.newFixedThreadPool(parsers, namedThreads("storm-parser-"));
+        ExecutorService writerPool = Executors.newFixedThreadPool(writerThreads, namedThreads("storm-writer-"));
+        long start = System.currentTimeMillis();
+        try {
+            List<Future<?>> downloads = new ArrayList<>();
+            for (Part part : parts) {
+                downloads.add(downloadPool.submit(() -> readPart(part, lines)));
+            }
+            List<Future<?>> parsing = new ArrayList<>();
+            for (int i = 0; i < parsers; i++) {
+                parsing.add(parserPool.submit(() -> parse(lines, papers, parser)));
+            }
+            List<Future<?>> writing = new ArrayList<>();
+            for (int i = 0; i < writerThreads; i++) {
+                writing.add(writerPool.submit(() -> write(papers, writer, checkpoint, written, batchSize)));
+            }
+
+            // 上游全部结束后，给下游每个线程各发一个结束标记
+            await(downloads);
+            for (int i = 0; i < parsers; i++) {
+                lines.put(END_OF_LINES);
+            }
+            await(parsing);
+            for (int i = 0; i < writerThreads; i++) {
+                papers.put(END_OF_PAPERS);
+            }
+            await(writing);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("文献导入被中断，已写入 {} 篇", written.get());
+        } finally {
+            downloadPool.shutdownNow();
+            parserPool.shutdownNow();
+            writerPool.shutdownNow();
+            for (Part part : parts) {
+                checkpoint.accept(part);
+            }
+        }
+        log.info("文献导入完成：{} 个文件，新增 {} 篇，耗时 {} ms", parts.size(), written.get(),
+                System.currentTimeMillis() - start);
+        return written.get();
+    }
+
+    // 下载（或读取本地文件）并解压一个 part 文件，跳过已提交的行，其余逐行放入行队列
+    private Void readPart(Part part, BlockingQueue<Line> lines) throws InterruptedException {
+        long number = 0;
+        try (InputStream input = open(part)) {
+            ResumableHttpInputStream download = input instanceof ResumableHttpInputStream
+                    ? (ResumableHttpInputStream) input : null;
+            String etag = download == null ? null : download.getEtag();
+            if (part.getEtag() != null && etag != null && !part.getEtag().equals(etag)) {
+                log.warn("{} 已变化，从头导入", part.getName());
+                part.restart(etag);
+            } else if (part.getEtag() == null) {
+                part.etag = etag;
+            }
+            long skip = part.getStartLine();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(input, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (number >= skip) {
+                        lines.put(new Line(part, number, line));
+                    }
+                    number++;
+                    if (download != null) {
+                        part.bytes = download.getPosition();
+                    }
+                }
+            }
+            part.totalLines = number;
+            log.info("{} 读取完成，共 {} 行，跳过已提交的 {} 行", part.getName(), number, skip);
+        } catch (IOException e) {
+            log.error("读取 {} 时出错（已读取 {} 行）：{}", part.getName(), number, e.getMessage());
+        }
+        return null;
+    }
+
+    // file: 开头的地址直接读取本地文件，其余通过 HTTP 下载
+    private InputStream open(Part part) throws IOException {
+        if (part.getUrl().startsWith("file:")) {
+            return Files.newInputStream(Paths.get(URI.create(part.getUrl())));
+        }
+        return new ResumableHttpInputStream(part.getUrl(), connectTimeout, readTimeout);
+    }
+
+    // 解析线程：空行和解析失败的行直接视为已提交
+    private Void parse(BlockingQueue<Line> lines, BlockingQueue<Parsed> papers, Function<String, Paper> parser)
+            throws InterruptedException {
+        while (true) {
+            Line line = lines.take();
+            if (line == END_OF_LINES) {
+                return null;
+            }
+            Paper paper = null;
+            try {
+                if (!line.text.isEmpty()) {
+                    paper = parser.apply(line.text);
+                }
+            } catch (RuntimeException e) {
+                log.warn("解析文献时出错：{}", e.getMessage());
+            }
+            if (paper != null) {
+                papers.put(new Parsed(line.part, line.number, paper));
+            } else {
+                line.part.complete(line.number);
+            }
+        }
+    }
+
+    // 写库线程：队列中已有的文献攒成一批写入，写入成功后这些行才算提交；一批写入失败不影响其他批次
+    private Void write(BlockingQueue<Parsed> papers, Function<List<Paper>, Integer> writer,
+                       Consumer<Part> checkpoint, AtomicInteger written, int batchSize) throws InterruptedException {
+        List<Parsed> batch = new ArrayList<>(batchSize);
+        while (true) {
+            batch.add(papers.take());
+            papers.drainTo(batch, batchSize - 1);
+            // 结束标记都在所有文献之后；多取到的结束标记放回给其他写库线程
+            int ends = 0;
+            for (Iterator<Parsed> it = batch.iterator(); it.hasNext(); ) {
+                if (it.next() == END_OF_PAPERS) {
+                    it.remove();
+                    ends++;
+                }
+            }
+            for (int i = 1; i < ends; i++) {
+                papers.put(END_OF_PAPERS);
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch, writer, checkpoint, written);
+                batch = new ArrayList<>(batchSize);
+            }
+            if (ends > 0) {
+                return null;
+            }
+        }
+    }
+
+    private void writeBatch(List<Parsed> batch, Function<List<Paper>, Integer> writer,
+                            Consumer<Part> checkpoint, AtomicInteger written) {
+        List<Paper> papers = new ArrayList<>(batch.size());
+        for (Parsed parsed : batch) {
+            papers.add(parsed.paper);
+        }
+        try {
+            written.addAndGet(writer.apply(papers));
+        } catch (RuntimeException e) {
+            log.warn("写入 {} 篇文献时出错：{}", papers.size(), e.getMessage());
+            return;
+        }
+        Set<Part> touched = new HashSet<>();
+        for (Parsed parsed : batch) {
+            parsed.part.complete(parsed.number);
+            touched.add(parsed.part);
+        }
+        long now = System.currentTimeMillis();
+        for (Part part : touched) {
+            if (part.checkpointDue(now, checkpointInterval)) {
+                checkpoint.accept(part);
+            }
+        }
+    }
+
+    private void await(List<Future<?>> futures) throws InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.error("文献导入任务异常结束：{}", e.getCause().getMessage());
+            }
+        }
+    }
+
+    private ThreadFactory namedThreads(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,18 +1,13 @@
 package com.buaa01.illumineer_backend.tool;
 
-import com.buaa01.illumineer_backend.entity.Category;
 import com.buaa01.illumineer_backend.entity.Paper;
+import com.buaa01.illumineer_backend.entity.StormPartCheckpoint;
 import com.buaa01.illumineer_backend.mapper.PaperMapper;
+import com.buaa01.illumineer_backend.mapper.PaperOutboxMapper;
 import com.buaa01.illumineer_backend.mapper.StormMapper;
-import com.buaa01.illumineer_backend.service.CategoryService;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.buaa01.illumineer_backend.utils.PidBloomFilter;
 import io.github.bonigarcia.wdm.WebDriverManager;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
@@ -23,7 +18,9 @@ import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -35,32 +32,35 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
 import java.net.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
 
 @Component
+@Slf4j
 public class StormTool {
-    @Autowired
-    private CategoryService categoryService;
+    /** 布隆过滤器至少为新文献预留的容量 */
+    private static final long BLOOM_RESERVED = 1_000_000L;
+
+    /** 布隆过滤器的误判率 */
+    @Value("${storm.bloom.fpp:0.01}")
+    private double bloomFpp;
+
     @Autowired
     private PaperMapper paperMapper;
     @Autowired
     private StormMapper stormMapper;
     @Autowired
+    private PaperOutboxMapper paperOutboxMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private StormPipeline stormPipeline;
+    @Autowired
+    private OpenAlexWorkParser openAlexWorkParser;
+    @Autowired
+    private StormCheckpointTool stormCheckpointTool;
+    @Autowired
     @Qualifier("taskExecutor")
     private Executor taskExecutor;
 
@@ -99,277 +99,156 @@ public class StormTool {
         return datePart;
     }
 
-    public int getPapers(String last_update) {
-        AtomicReference<Paper> article = new AtomicReference<>();
-        AtomicInteger articles = new AtomicInteger();
-        String downloadDir = "downloads";
+    /**
+     * 导入一个 updated_date 分区中的若干 part 文件，从上次保存的进度继续：已完成的 part 文件跳过，未完成的跳过已提交的行
+     * @param last_update updated_date 分区
+     * @param partUrls    part 文件的下载地址
+     * @param existing    库中已有pid的布隆过滤器
+     * @return 新增的文献数
+     */
+    public int importParts(String last_update, List<String> partUrls, PidBloomFilter existing) {
         try {
-            String url2 = "https://openalex.s3.amazonaws.com/?list-type=2&delimiter=%2F&prefix=data%2Fworks%2Fupdated_date%3D" + last_update + "%2F";
-            URI uri2 = new URI(url2);
-            URL xmlUrl2 = uri2.toURL();
-            InputStream inputStream2 = xmlUrl2.openStream();
-            DocumentBuilderFactory factory2 = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder2 = factory2.newDocumentBuilder();
-            Document document2 = builder2.parse(inputStream2);
-            Element root2 = document2.getDocumentElement();
-            NodeList commonPrefixes2 = root2.getElementsByTagName("Contents");
-            int len2 = commonPrefixes2.getLength();
-            System.out.println(len2);
-            for (int i = 0; i < len2; i++) {
-                String uri0 = String.format("https://openalex.s3.amazonaws.com/data/works/updated_date%%3D%s/part_%03d.gz", last_update, i);
-                System.out.println(uri0); // 用于调试，可以删除
-                downloadFile(uri0, "downloads\\part_" + String.format("%03d", i) + ".gz");
-            }
-            // Find the .gz file in the download directory
-            File[] gzFiles = new File(downloadDir).listFiles((dir, name) -> name.endsWith(".gz"));
-            if (gzFiles == null || gzFiles.length == 0) {
-                System.out.println("No .gz file found!");
-                return articles.get();
-            }
-            for (int i = 0; i < gzFiles.length; i++) {
-                File gzFile = gzFiles[i];
-                // Decompress the .gz file
-                String outputPath = "downloads\\data\\data" + i + ".txt"; // Output file path
-                try (GZIPInputStream gis = new GZIPInputStream(new FileInputStream(gzFile));
-                     FileOutputStream fos = new FileOutputStream(outputPath)) {
-                    byte[] buffer = new byte[1024];
-                    int len;
-                    while ((len = gis.read(buffer)) > 0) {
-                        fos.write(buffer, 0, len);
-                    }
-                }
-                // Read and print the decompressed file content
-                try (BufferedReader br = new BufferedReader(new FileReader(outputPath))) {
-                    String line;
-                    List<CompletableFuture<Void>> futures = new ArrayList<>();
-                    while ((line = br.readLine()) != null) {
-                        String finalLine = line;
-                        // Assuming the line contains JSON
-                        article.set(handle(finalLine));
-                        if (article.get() != null && paperMapper.getPaperByPid(article.get().getPid()) == null) {
-                            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                                try {
-                                    stormMapper.insertPaper(article.get().getPid(), article.get().getTitle(),
-                                            article.get().getEssAbs(), article.get().getKeywords(),
-                                            article.get().getContentUrl(), article.get().getAuths(),
-                                            article.get().getCategory(), article.get().getType(),
-                                            article.get().getTheme(), article.get().getPublishDate(),
-                                            article.get().getDerivation(), article.get().getRefs(),
-                                            article.get().getRefTimes(), article.get().getFavTimes(),
-                                            article.get().getStats());
-                                    articles.getAndIncrement();
-                                } catch (Exception e) {
-                                    // Handle exceptions during processing
-                                    e.printStackTrace();
-                                }
-                            }, taskExecutor);
-                            futures.add(future);
-                        }
-                    }
-                    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            Map<String, StormPartCheckpoint> checkpoints = stormCheckpointTool.getCheckpoints(last_update);
+            List<StormPipeline.Part> parts = new ArrayList<>();
+            for (String partUrl : partUrls) {
+                String name = partName(partUrl);
+                StormPartCheckpoint checkpoint = checkpoints.get(name);
+                if (checkpoint == null) {
+                    parts.add(new StormPipeline.Part(name, partUrl, null, 0, 0));
+                } else if (!Boolean.TRUE.equals(checkpoint.getDone())) {
+                    parts.add(new StormPipeline.Part(name, partUrl, checkpoint.getEtag(),
+                            checkpoint.getLines(), checkpoint.getBytes()));
                 }
             }
-            // Delete and recreate the download directory
-            Path downloadPath = Paths.get(downloadDir);
-            if (Files.exists(downloadPath)) {
-                try (Stream<Path> paths = Files.walk(downloadPath)) {
-                    paths.sorted(Comparator.reverseOrder())
-                            .map(Path::toFile)
-                            .forEach(File::delete);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+            if (parts.isEmpty()) {
+                return 0;
             }
-            Files.createDirectories(downloadPath);
+            // 下载、解压、解析、写库在内存中流式进行，多个 part 文件同时处理
+            return stormPipeline.run(parts, this::parse, batch -> save(batch, existing),
+                    part -> stormCheckpointTool.save(last_update, new StormPartCheckpoint(part.getName(),
+                            part.getEtag(), part.getBytes(), part.getCommittedLines(), part.isDone())));
         } catch (Exception e) {
-            e.printStackTrace();
-            return articles.get();
+            log.error("导入 {} 的 part 文件出错", last_update, e);
+            return 0;
         }
-        return articles.get();
     }
 
-    private Paper handle(String line) throws ParseException, SQLException, JsonProcessingException {
-        JsonObject jsonObject = JsonParser.parseString(line).getAsJsonObject();
-        Paper article = new Paper();
-        String oid = jsonObject.get("id").getAsString();
-        int start = oid.indexOf('W') + 1;
-        int end = oid.length();
-        long id = Long.parseLong(oid.substring(start, end));
-        article.setPid(id);
-        JsonElement title = jsonObject.get("title");
-        if (title != null && !title.isJsonNull())
-            article.setTitle(jsonObject.get("title").getAsString());
-        else
-            article.setTitle("");
-        JsonElement abstractIndex = jsonObject.get("abstract_inverted_index");
-        if (abstractIndex != null && abstractIndex.isJsonObject()) {
-            article.setEssAbs(montage(abstractIndex.toString()));
-        } else {
-            article.setEssAbs(""); // 或者设为某个默认值
-        }
-        JsonElement keywordsElement = jsonObject.get("keywords");
-        List<String> keywordList = new ArrayList<>();
-        if (keywordsElement != null && keywordsElement.isJsonArray()) {
-            JsonArray keys = keywordsElement.getAsJsonArray();
-            if (!keys.isEmpty()) {
-                for (JsonElement key : keys) {
-                    if (key.isJsonObject()) {
-                        JsonObject keyObject = key.getAsJsonObject();
-                        JsonElement keywordElement = keyObject.get("display_name");
-                        // 确保 keywordElement 不为 null
-                        if (keywordElement != null && !keywordElement.isJsonNull()) {
-                            String k = keywordElement.getAsString();
-                            keywordList.add(k);
-                        }
-                    }
-                }
-            }
-        }
-        article.setKeywords(keywordList);
-        JsonElement primaryLocationElement = jsonObject.get("primary_location");
-        if (primaryLocationElement != null && primaryLocationElement.isJsonObject()) {
-            JsonObject primaryLocation = primaryLocationElement.getAsJsonObject();
-            JsonElement pdfUrlElement = primaryLocation.get("pdf_url");
-            if (pdfUrlElement != null && !pdfUrlElement.isJsonNull()) {
-                String pdfUrl = pdfUrlElement.getAsString();
-                article.setContentUrl(pdfUrl);
-            } else {
-                article.setContentUrl("");
+    /**
+     * 分区中的 part 文件是否都已导入完成
+     */
+    public boolean isImported(String last_update, List<String> partUrls) {
+        Map<String, StormPartCheckpoint> checkpoints = stormCheckpointTool.getCheckpoints(last_update);
+        for (String partUrl : partUrls) {
+            StormPartCheckpoint checkpoint = checkpoints.get(partName(partUrl));
+            if (checkpoint == null || !Boolean.TRUE.equals(checkpoint.getDone())) {
+                return false;
             }
-        } else {
-            article.setContentUrl("");
-        }
-        Map<String, Integer> displayNames = new HashMap<>();
-        JsonArray authorships = jsonObject.getAsJsonArray("authorships");
-        for (JsonElement authorship : authorships) {
-            JsonObject author = authorship.getAsJsonObject().getAsJsonObject("author");
-            String displayName = author.get("display_name").getAsString();
-            displayNames.put(displayName, 0);
         }
-        article.setAuths(displayNames);
-        JsonElement topicElement = jsonObject.get("primary_topic");
-        if (topicElement != null && !topicElement.isJsonNull()) {
-            String theme = topicElement.getAsJsonObject().get("display_name").getAsString();
-            article.setTheme(theme);
-            String subfield = topicElement.getAsJsonObject().get("subfield").getAsJsonObject().get("display_name").getAsString();
-            String field = topicElement.getAsJsonObject().get("field").getAsJsonObject().get("display_name").getAsString();
-            String subfieldId = topicElement.getAsJsonObject().get("subfield").getAsJsonObject().get("id").getAsString();
-            String fieldId = topicElement.getAsJsonObject().get("field").getAsJsonObject().get("id").getAsString();
-//            article.setCategoryId(Integer.parseInt(fieldId));
-            // 定义正则表达式：提取 URL 中最后的数字
-            Pattern pattern = Pattern.compile("(\\d+)$");
-            Matcher matcher = pattern.matcher(subfieldId.trim());
-            // 查找并提取匹配的数字
-            String subfieldNumber = "1";
-            if (matcher.find()) {
-                subfieldNumber = matcher.group(1);
-            }
-            matcher = pattern.matcher(fieldId.trim());
-            String fieldNumber = "0";
-            if (matcher.find()) {
-                fieldNumber = matcher.group(1);
-            }
-            Category rs = categoryService.getCategoryByID(subfieldNumber);
-            if (rs == null) {
-                rs = categoryService.insertCategory(subfieldNumber, fieldNumber, subfield, field);
-            }
-            article.setCategory(rs.toJsonString());
-        }
-        String date = jsonObject.get("publication_date").getAsString();
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
-        Date publishDate = formatter.parse(date);
-        article.setPublishDate(publishDate);
-        if (primaryLocationElement != null && primaryLocationElement.isJsonObject()) {
-            JsonObject primaryLocation = primaryLocationElement.getAsJsonObject();
-            JsonElement sourceElement = primaryLocation.get("source");
-            if (sourceElement != null && sourceElement.isJsonObject()) {
-                JsonObject source = sourceElement.getAsJsonObject();
-                JsonElement pubElement = source.get("publisher");
-                if (pubElement != null && !pubElement.isJsonNull()) {
-                    String publisher = pubElement.getAsString();
-                    article.setDerivation(publisher);
-                } else {
-                    article.setDerivation("");
+        return true;
+    }
+
+    // https://.../part_000.gz → part_000.gz
+    public static String partName(String partUrl) {
+        return partUrl.substring(partUrl.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 列出 OpenAlex 所有的 updated_date 分区
+     * @return 按日期升序排列的 updated_date
+     */
+    public List<String> listUpdatedDates() throws URISyntaxException, IOException,
+            ParserConfigurationException, SAXException {
+        String url = "https://openalex.s3.amazonaws.com/?list-type=2&delimiter=%2F&prefix=data%2Fworks%2F";
+        List<String> dates = new ArrayList<>();
+        try (InputStream inputStream = new URI(url).toURL().openStream()) {
+            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            NodeList commonPrefixes = builder.parse(inputStream).getDocumentElement()
+                    .getElementsByTagName("CommonPrefixes");
+            for (int i = 0; i < commonPrefixes.getLength(); i++) {
+                for (String part : commonPrefixes.item(i).getTextContent().split("/")) {
+                    if (part.startsWith("updated_date=")) {
+                        dates.add(part.substring("updated_date=".length()));
+                    }
                 }
-            } else {
-                article.setDerivation("");
             }
-        } else {
-            article.setDerivation("");
-        }
-        article.setRefTimes(jsonObject.get("cited_by_count").getAsInt());
-        List<Long> referenceList = new ArrayList<>();
-        JsonArray references = jsonObject.getAsJsonArray("related_works");
-        for (JsonElement reference : references) {
-            String r = reference.getAsString();
-            start = r.indexOf('W') + 1;
-            end = r.length();
-            id = Long.parseLong(r.substring(start, end));
-            referenceList.add(id);
         }
-        article.setRefs(referenceList);
-        article.setFavTimes(0);
-        article.setStats(0);
-        JsonElement typeElement = jsonObject.get("type");
-        if (typeElement != null && !typeElement.isJsonNull()) {
-            String type = typeElement.getAsString();
-            article.setType(type);
-        } else
-            article.setType("");
-        return article;
+        Collections.sort(dates);
+        return dates;
     }
 
-    public String montage(String originalString) {
-        JSONObject jsonObject = new JSONObject(originalString);
-        // 创建一个空的列表来存储单词及其位置
-        List<Map.Entry<Integer, String>> sentenceList = new ArrayList<>();
-        // 遍历倒排索引，将每个单词和位置对存入句子列表
-        for (String word : jsonObject.keySet()) {
-            JSONArray positions = jsonObject.getJSONArray(word);
-            for (int i = 0; i < positions.length(); i++) {
-                sentenceList.add(new AbstractMap.SimpleEntry<>(positions.getInt(i), word));
+    /**
+     * 列出该更新日期下所有 part_XXX.gz 的下载地址
+     */
+    public List<String> listParts(String last_update) throws URISyntaxException, IOException,
+            ParserConfigurationException, SAXException {
+        String url = "https://openalex.s3.amazonaws.com/?list-type=2&delimiter=%2F&prefix=data%2Fworks%2Fupdated_date%3D" + last_update + "%2F";
+        List<String> partUrls = new ArrayList<>();
+        try (InputStream inputStream = new URI(url).toURL().openStream()) {
+            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            Element root = builder.parse(inputStream).getDocumentElement();
+            NodeList contents = root.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                NodeList keys = ((Element) contents.item(i)).getElementsByTagName("Key");
+                if (keys.getLength() > 0 && keys.item(0).getTextContent().endsWith(".gz")) {
+                    partUrls.add("https://openalex.s3.amazonaws.com/" + keys.item(0).getTextContent());
+                }
             }
         }
-        // 按照位置对列表进行排序
-        sentenceList.sort(Comparator.comparingInt(Map.Entry::getKey));
-        // 拼接成完整的句子
-        StringBuilder reconstructedSentence = new StringBuilder();
-        for (Map.Entry<Integer, String> entry : sentenceList) {
-            reconstructedSentence.append(entry.getValue()).append(" ");
-        }
-        return reconstructedSentence.toString().trim();
+        return partUrls;
     }
 
-    public static void downloadFile(String fileURL, String saveDir) throws URISyntaxException {
+    /**
+     * 解析一行 works 记录，失败时返回null，跳过该行
+     */
+    public Paper parse(String line) {
         try {
-            URI url = new URI(fileURL);
-            HttpURLConnection httpConn = (HttpURLConnection) url.toURL().openConnection();
-            int responseCode = httpConn.getResponseCode();
-
-            // 检查HTTP响应码是否为200 (HTTP_OK)
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                // 打开输入流
-                InputStream inputStream = httpConn.getInputStream();
-                // 打开输出流
-                FileOutputStream outputStream = new FileOutputStream(saveDir);
-
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                }
+            return openAlexWorkParser.parse(line);
+        } catch (Exception e) {
+            log.error("解析 works 记录出错，跳过该行", e);
+            return null;
+        }
+    }
 
-                // 关闭流
-                outputStream.close();
-                inputStream.close();
+    /**
+     * 库中已有pid的布隆过滤器，为本次导入预留空间
+     */
+    public PidBloomFilter loadExistingPids() {
+        long count = stormMapper.countPapers();
+        PidBloomFilter filter = new PidBloomFilter(count + Math.max(count / 5, BLOOM_RESERVED), bloomFpp);
+        stormMapper.scanPids(context -> filter.put(context.getResultObject()));
+        return filter;
+    }
 
-                System.out.println("File downloaded and saved to " + saveDir);
-            } else {
-                System.out.println("No file to download. Server replied HTTP code: " + responseCode);
+    /**
+     * 批量写入文献：批内按pid去重，布隆过滤器判定可能已存在的pid再批量查库确认，
+     * 其余直接多行插入；插入语句是 insert ignore，并发写入同一pid时也只保留先写入的一条
+     * @return 新增的条数
+     */
+    private int save(List<Paper> batch, PidBloomFilter existing) {
+        Map<Long, Paper> papers = new LinkedHashMap<>();
+        List<Long> suspects = new ArrayList<>();
+        for (Paper paper : batch) {
+            if (papers.putIfAbsent(paper.getPid(), paper) == null && existing.mightContain(paper.getPid())) {
+                suspects.add(paper.getPid());
+            }
+        }
+        if (!suspects.isEmpty()) {
+            for (Long pid : stormMapper.getExistingPids(suspects)) {
+                papers.remove(pid);
             }
-            httpConn.disconnect();
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        if (papers.isEmpty()) {
+            return 0;
+        }
+        // 新增的文献和变更记录在同一事务中写入，由 PaperOutboxRelay 同步到 ES
+        Integer inserted = transactionTemplate.execute(status -> {
+            int count = stormMapper.insertPapers(new ArrayList<>(papers.values()));
+            paperOutboxMapper.insertAll(papers.keySet(), null);
+            return count;
+        });
+        for (Long pid : papers.keySet()) {
+            existing.put(pid);
+        }
+        return inserted == null ? 0 : inserted;
     }
 }
@@ -0,0 +1,114 @@
+package com.buaa01.illumineer_backend.utils;
+
+import com.buaa01.illumineer_backend.entity.Paper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 论文行数据中 JSON 列与日期列的解析，ObjectMapper 和格式化器全局共用
+ */
+@Slf4j
+public class PaperCodec {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<List<String>> KEYWORDS_TYPE = new TypeReference<List<String>>() {
+    };
+    private static final TypeReference<Map<String, Integer>> AUTHS_TYPE = new TypeReference<Map<String, Integer>>() {
+    };
+    private static final TypeReference<List<Long>> REFS_TYPE = new TypeReference<List<Long>>() {
+    };
+    /* Date.toString() 的格式 */
+    private static final DateTimeFormatter DATE_TO_STRING_FORMATTER =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss z yyyy", Locale.ENGLISH);
+
+    public static List<String> parseKeywords(Object value) {
+        return parse(value, KEYWORDS_TYPE);
+    }
+
+    public static Map<String, Integer> parseAuths(Object value) {
+        return parse(value, AUTHS_TYPE);
+    }
+
+    public static List<Long> parseRefs(Object value) {
+        return parse(value, REFS_TYPE);
+    }
+
+    private static <T> T parse(Object value, TypeReference<T> type) {
+        if (value == null || value.toString().isEmpty()) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.readValue(value.toString(), type);
+        } catch (Exception e) {
+            log.error("解析 JSON 列出错：{}", value, e);
+            return null;
+        }
+    }
+
+    /**
+     * 序列化为 JSON 字符串，null 返回空字符串
+     */
+    public static String toJson(Object value) {
+        if (value == null) {
+            return "";
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(value);
+        } catch (Exception e) {
+            log.error("序列化为 JSON 出错", e);
+            return "";
+        }
+    }
+
+    /**
+     * 还原为 select * 的行格式：数据库列名作为键，JSON 列为 JSON 字符串
+     */
+    public static Map<String, Object> toRow(Paper paper) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("pid", paper.getPid());
+        row.put("title", paper.getTitle());
+        row.put("theme", paper.getTheme());
+        row.put("ess_abs", paper.getEssAbs());
+        row.put("keywords", paper.getKeywords() == null ? null : toJson(paper.getKeywords()));
+        row.put("auths", paper.getAuths() == null ? null : toJson(paper.getAuths()));
+        row.put("derivation", paper.getDerivation());
+        row.put("type", paper.getType());
+        row.put("publish_date", paper.getPublishDate());
+        row.put("category", paper.getCategory());
+        row.put("fav_times", paper.getFavTimes());
+        row.put("ref_times", paper.getRefTimes());
+        row.put("refs", paper.getRefs() == null ? null : toJson(paper.getRefs()));
+        row.put("content_url", paper.getContentUrl());
+        row.put("stats", paper.getStats());
+        return row;
+    }
+
+    /**
+     * 将 publish_date 列转换为 Date，兼容 LocalDateTime、Date 以及两种字符串格式
+     */
+    public static Date toDate(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Date) {
+            return (Date) value;
+        }
+        if (value instanceof LocalDateTime) {
+            return Date.from(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant());
+        }
+        String text = value.toString();
+        LocalDateTime localDateTime = text.contains(" ")
+                ? LocalDateTime.parse(text, DATE_TO_STRING_FORMATTER)
+                : LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        return Date.from(localDateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -1,68 +1,182 @@
 package com.buaa01.illumineer_backend.utils;
 
-import java.sql.Date;
-import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
-import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
 
+import com.buaa01.illumineer_backend.config.PaperRankConfig;
 import com.buaa01.illumineer_backend.entity.SearchResultPaper;
 
+/**
+ * 综合评分（sortType=4）在内存中的实现，权重和归一化参数取自 PaperRankConfig，
+ * 公式与 ElasticSearchTool 的评分脚本相同，只是文本相关度用关键词匹配度代替 BM25
+ */
 public class PaperSortScorer {
-    /* 引用次数权重 */
-    final static double W_REF = 0.3;
-    /* 收藏次数权重 */
-    final static double W_FAV = 0.2;
-    /* 出版时间权重 */
-    final static double W_TIME = 0.1;
-    /* 关键词匹配权重 */
-    final static double W_KEYWORD = 0.4;
+    /* 一年的毫秒数，与评分脚本相同 */
+    final static double MILLIS_PER_YEAR = 365.2425 * 24 * 60 * 60 * 1000;
 
-    public static double calculateScore(SearchResultPaper paper, List<String> userKeywords) {
+    public static double calculateScore(SearchResultPaper paper, List<String> userKeywords, PaperRankConfig config) {
+        return calculateScore(paper, toTermSet(userKeywords), System.currentTimeMillis(), config);
+    }
+
+    /**
+     * 综合评分，每篇论文的关键词只解析一次
+     *
+     * @param paper     论文
+     * @param userTerms 用户关键词的词集，由 toTermSet 得到
+     * @param now       当前时间戳，同一批论文共用
+     * @param config    评分权重
+     * @return score
+     */
+    public static double calculateScore(SearchResultPaper paper, Set<String> userTerms, long now,
+            PaperRankConfig config) {
         // 引用次数评分
-        double refScore = normalize(paper.getRefTimes(), 1000);
+        double refScore = normalize(paper.getRefTimes(), config.getRefScale());
         // 收藏次数评分
-        double favScore = normalize(paper.getFavTime(), 10000);
+        double favScore = normalize(paper.getFavTime(), config.getFavScale());
         // 时间评分
-        double timeScore = calculateTimeScore((Date) paper.getPublishDate());
+        double timeScore = calculateTimeScore(paper.getPublishDate(), now, config.getTimeDecay());
         // 关键词匹配度评分
-        double keywordScore = calculateKeywordScore(paper.getKeywords(), userKeywords);
-
+        double keywordScore = calculateKeywordScore(paper.getKeywords(), userTerms);
         // 综合评分
-        return W_REF * refScore + W_FAV * favScore + W_TIME * timeScore + W_KEYWORD * keywordScore;
+        return config.getRefWeight() * refScore + config.getFavWeight() * favScore
+                + config.getTimeWeight() * timeScore + config.getTextWeight() * keywordScore;
     }
 
     /**
-     * 
+     * 按综合评分取前 k 篇：每篇只评分一次，用大小为 k 的堆，不对整个列表排序
+     *
+     * @param papers       候选论文
+     * @param userKeywords 用户关键词
+     * @param k            需要的条数，一般为 offset*size
+     * @param order        0=降序，1=升序
+     * @param config       评分权重
+     * @return 按评分排好序的前 k 篇
+     */
+    public static List<SearchResultPaper> topK(List<SearchResultPaper> papers, List<String> userKeywords, int k,
+            Integer order, PaperRankConfig config) {
+        if (k <= 0 || papers.isEmpty()) {
+            return new ArrayList<>();
+        }
+        boolean desc = order == null || order == 0;
+        Set<String> userTerms = toTermSet(userKeywords);
+        long now = System.currentTimeMillis();
+
+        // 堆顶是当前前 k 名中最该被淘汰的一篇
+        PriorityQueue<ScoredPaper> heap = new PriorityQueue<>(Math.min(k, papers.size()) + 1,
+                desc ? (o1, o2) -> Double.compare(o1.score, o2.score)
+                        : (o1, o2) -> Double.compare(o2.score, o1.score));
+        for (SearchResultPaper paper : papers) {
+            ScoredPaper scored = new ScoredPaper(paper, calculateScore(paper, userTerms, now, config));
+            if (heap.size() < k) {
+                heap.offer(scored);
+            } else if (desc ? scored.score > heap.peek().score : scored.score < heap.peek().score) {
+                heap.poll();
+                heap.offer(scored);
+            }
+        }
+
+        List<SearchResultPaper> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll().paper);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 用户关键词的词集：整个关键词以及其中每个词，统一小写
+     */
+    public static Set<String> toTermSet(List<String> userKeywords) {
+        Set<String> terms = new HashSet<>();
+        if (userKeywords == null) {
+            return terms;
+        }
+        for (String keyword : userKeywords) {
+            if (keyword == null || keyword.isBlank()) {
+                continue;
+            }
+            String phrase = keyword.strip().toLowerCase(Locale.ROOT);
+            terms.add(phrase);
+            Collections.addAll(terms, phrase.split("\\s+"));
+        }
+        return terms;
+    }
+
+    /**
+     *
      * @param value       分子
      * @param denominator 分母
      * @return score
      */
-    private static double normalize(int value, int denominator) {
-        return (double) value / denominator;
+    private static double normalize(Integer value, double denominator) {
+        return value == null ? 0 : (double) value / denominator;
     }
 
     /**
-     * 计算时间评分
-     * 
+     * 计算时间评分，按发表至今的年数（含小数）连续衰减
+     *
      * @param publishDate 发布日期
+     * @param now         当前时间戳
+     * @param decay       年衰减系数
      * @return score
      */
-    private static double calculateTimeScore(Date publishDate) {
-        long yearsSincePublished = ChronoUnit.YEARS.between((Temporal) publishDate, LocalDate.now());
-        double lambda = 0.1; // 时间衰减系数
-        return Math.exp(-lambda * yearsSincePublished);
+    private static double calculateTimeScore(Date publishDate, long now, double decay) {
+        if (publishDate == null) {
+            return 0;
+        }
+        double yearsSincePublished = Math.max(0, now - publishDate.getTime()) / MILLIS_PER_YEAR;
+        return Math.exp(-decay * yearsSincePublished);
     }
 
     /**
      * 关键词匹配分数，匹配到的越多分数越高
-     * 
+     * 论文关键词整体在词集中，或其中每个词都在词集中，即视为匹配
+     *
      * @param paperKeywords
-     * @param userKeywords
+     * @param userTerms
      * @return
      */
-    private static double calculateKeywordScore(List<String> paperKeywords, List<String> userKeywords) {
-        long matches = paperKeywords.stream().filter(userKeywords::contains).count();
+    private static double calculateKeywordScore(List<String> paperKeywords, Set<String> userTerms) {
+        if (paperKeywords == null || paperKeywords.isEmpty() || userTerms.isEmpty()) {
+            return 0;
+        }
+        int matches = 0;
+        for (String keyword : paperKeywords) {
+            if (keyword == null) {
+                continue;
+            }
+            String phrase = keyword.strip().toLowerCase(Locale.ROOT);
+            if (userTerms.contains(phrase)) {
+                matches++;
+                continue;
+            }
+            boolean allMatched = true;
+            for (String term : phrase.split("\\s+")) {
+                if (!userTerms.contains(term)) {
+                    allMatched = false;
+                    break;
+                }
+            }
+            if (allMatched) {
+                matches++;
+            }
+        }
         return (double) matches / paperKeywords.size();
     }
-}
\ No newline at end of file
+
+    private static class ScoredPaper {
+        final SearchResultPaper paper;
+        final double score;
+
+        ScoredPaper(SearchResultPaper paper, double score) {
+            this.paper = paper;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.buaa01.illumineer_backend.utils;
+
+import com.buaa01.illumineer_backend.entity.SearchResultPaper;
+import lombok.Getter;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 检索会话结果集的筛选项位图索引
+ * 每个筛选项的每个取值对应一个位图，第 i 位表示结果集中第 i 篇论文是否取该值；
+ * 同一筛选项内的多个选择取并集，不同筛选项之间取交集，选项数量由位图基数得到
+ */
+public class SearchFacetIndex {
+    public static final String YEAR = "year";
+    public static final String DERIVATION = "derivation";
+    public static final String TYPE = "type";
+    public static final String THEME = "theme";
+    /* 筛选项名称与返回给前端的 options 名称 */
+    private static final String[][] FACETS = {
+            {YEAR, "years"}, {DERIVATION, "derivations"}, {TYPE, "types"}, {THEME, "themes"}
+    };
+    /* 每个筛选项最多返回的选项数 */
+    private static final int OPTION_SIZE = 10;
+
+    @Getter
+    private final List<SearchResultPaper> papers;
+    private final Map<String, Map<String, BitSet>> facets = new HashMap<>();
+    /* 各排序方式下论文在结果集中的下标，按需计算 */
+    private final Map<Integer, int[]> sortedIndexes = new ConcurrentHashMap<>();
+
+    public SearchFacetIndex(List<SearchResultPaper> papers) {
+        this.papers = papers;
+        for (String[] facet : FACETS) {
+            facets.put(facet[0], new HashMap<>());
+        }
+        for (int i = 0; i < papers.size(); i++) {
+            SearchResultPaper paper = papers.get(i);
+            if (paper.getPublishDate() != null) {
+                add(YEAR, String.valueOf(paper.getPublishDate().toInstant().atZone(ZoneId.systemDefault()).getYear()), i);
+            }
+            add(DERIVATION, paper.getDerivation(), i);
+            add(TYPE, paper.getType(), i);
+            add(THEME, paper.getTheme(), i);
+        }
+    }
+
+    private void add(String facet, String value, int i) {
+        if (value != null && !value.isEmpty()) {
+            facets.get(facet).computeIfAbsent(value, v -> new BitSet(papers.size())).set(i);
+        }
+    }
+
+    /**
+     * 按筛选条件得到命中的位图
+     */
+    public BitSet filter(FilterCondition sc) {
+        return filterExcept(sc, null);
+    }
+
+    // 除 except 之外所有筛选项的交集
+    private BitSet filterExcept(FilterCondition sc, String except) {
+        BitSet result = new BitSet(papers.size());
+        result.set(0, papers.size());
+        for (String[] facet : FACETS) {
+            List<?> selected = getSelected(sc, facet[0]);
+            if (facet[0].equals(except) || selected.isEmpty()) {
+                continue;
+            }
+            BitSet union = new BitSet(papers.size());
+            for (Object value : selected) {
+                BitSet bits = facets.get(facet[0]).get(String.valueOf(value));
+                if (bits != null) {
+                    union.or(bits);
+                }
+            }
+            result.and(union);
+        }
+        return result;
+    }
+
+    /**
+     * 在其余筛选项的条件下，每个筛选项各取值的数量，按数量从大到小保留前 OPTION_SIZE 个
+     */
+    public Map<String, Map<String, Integer>> getOptions(FilterCondition sc) {
+        Map<String, Map<String, Integer>> options = new HashMap<>();
+        for (String[] facet : FACETS) {
+            BitSet base = filterExcept(sc, facet[0]);
+            List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+            for (Map.Entry<String, BitSet> entry : facets.get(facet[0]).entrySet()) {
+                BitSet bits = (BitSet) entry.getValue().clone();
+                bits.and(base);
+                if (!bits.isEmpty()) {
+                    counts.add(new AbstractMap.SimpleEntry<>(entry.getKey(), bits.cardinality()));
+                }
+            }
+            counts.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
+            Map<String, Integer> option = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> count : counts.subList(0, Math.min(OPTION_SIZE, counts.size()))) {
+                option.put(count.getKey(), count.getValue());
+            }
+            options.put(facet[1], option);
+        }
+        return options;
+    }
+
+    /**
+     * 按排序方式取命中位图中的一页
+     * @param bits     命中的位图
+     * @param sortType 1=publishDate出版时间，2=ref_times引用次数，3=fav_time收藏次数，其余保持结果集原顺序
+     * @param order    0=降序，1=升序
+     * @param start    起始位置
+     * @param size     条数
+     * @return 当前页的论文
+     */
+    public List<SearchResultPaper> getPage(BitSet bits, Integer sortType, Integer order, int start, int size) {
+        List<SearchResultPaper> page = new ArrayList<>(size);
+        int[] indexes = getSortedIndexes(sortType);
+        boolean reversed = indexes != null && order != null && order == 0;
+        int skipped = 0;
+        for (int k = 0; k < papers.size() && page.size() < size; k++) {
+            int i = indexes == null ? k : indexes[reversed ? papers.size() - 1 - k : k];
+            if (!bits.get(i)) {
+                continue;
+            }
+            if (skipped < start) {
+                skipped++;
+            } else {
+                page.add(papers.get(i));
+            }
+        }
+        return page;
+    }
+
+    // 按升序排列的下标，不需要排序时返回null
+    private int[] getSortedIndexes(Integer sortType) {
+        Comparator<SearchResultPaper> comparator;
+        if (sortType == null) {
+            return null;
+        } else if (sortType == 1) {
+            comparator = Comparator.comparing(SearchResultPaper::getPublishDate,
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+        } else if (sortType == 2) {
+            comparator = Comparator.comparing(SearchResultPaper::getRefTimes,
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+        } else if (sortType == 3) {
+            comparator = Comparator.comparing(SearchResultPaper::getFavTime,
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+        } else {
+            return null;
+        }
+        return sortedIndexes.computeIfAbsent(sortType, t -> {
+            Integer[] boxed = new Integer[papers.size()];
+            for (int i = 0; i < boxed.length; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, (i1, i2) -> comparator.compare(papers.get(i1), papers.get(i2)));
+            int[] indexes = new int[boxed.length];
+            for (int i = 0; i < boxed.length; i++) {
+                indexes[i] = boxed[i];
+            }
+            return indexes;
+        });
+    }
+
+    /**
+     * 某个筛选项选中的取值；前端传来的年份可能是数字，使用时统一转为字符串
+     */
+    public static List<?> getSelected(FilterCondition sc, String facet) {
+        switch (facet) {
+            case YEAR: return sc.getYear();
+            case DERIVATION: return sc.getDerivation();
+            case TYPE: return sc.getType();
+            default: return sc.getTheme();
+        }
+    }
+}
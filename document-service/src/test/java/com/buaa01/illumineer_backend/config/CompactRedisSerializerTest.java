@@ -0,0 +1,126 @@
+package com.buaa01.illumineer_backend.config;
+
+import com.buaa01.illumineer_backend.entity.Paper;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactRedisSerializerTest {
+    private static final int THRESHOLD = 512;
+
+    private final CompactRedisSerializer serializer = new CompactRedisSerializer(true, THRESHOLD);
+
+    @Test
+    void smallValueStaysJson() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("pid", 1);
+        value.put("title", "short");
+
+        byte[] bytes = serializer.serialize(value);
+
+        assertTrue(bytes.length < THRESHOLD);
+        assertEquals('[', bytes[0]);
+        assertArrayEquals(legacySerializer().serialize(value), bytes);
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void largeValueIsCompressedSmile() {
+        Paper paper = largePaper();
+
+        byte[] bytes = serializer.serialize(paper);
+
+        assertEquals(0, bytes[0]);
+        assertEquals('L', bytes[1]);
+        assertEquals('Z', bytes[2]);
+        assertTrue(bytes.length < legacySerializer().serialize(paper).length);
+        assertEquals(paper, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void compactDisabledWritesJsonButReadsCompressed() {
+        Paper paper = largePaper();
+        CompactRedisSerializer jsonOnly = new CompactRedisSerializer(false, THRESHOLD);
+
+        byte[] json = jsonOnly.serialize(paper);
+
+        assertEquals('[', json[0]);
+        assertEquals(paper, jsonOnly.deserialize(json));
+        assertEquals(paper, jsonOnly.deserialize(serializer.serialize(paper)));
+    }
+
+    @Test
+    void readsLegacyJackson2JsonValues() {
+        Jackson2JsonRedisSerializer<Object> legacy = legacySerializer();
+        Paper paper = largePaper();
+        List<String> members = new ArrayList<>(List.of("a", "b"));
+
+        assertEquals(paper, serializer.deserialize(legacy.serialize(paper)));
+        assertEquals(members, serializer.deserialize(legacy.serialize(members)));
+        assertEquals("owner-token", serializer.deserialize(legacy.serialize("owner-token")));
+    }
+
+    @Test
+    void hashIncrementValuesRoundTrip() {
+        // HINCRBY 把计数存为十进制文本
+        assertEquals(5, serializer.deserialize("5".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(-3, serializer.deserialize("-3".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(12345678901L, serializer.deserialize("12345678901".getBytes(StandardCharsets.US_ASCII)));
+        // 写入的整数也必须是 HINCRBY 能处理的文本
+        assertArrayEquals("7".getBytes(StandardCharsets.US_ASCII), serializer.serialize(7));
+        assertArrayEquals("7".getBytes(StandardCharsets.US_ASCII), serializer.serialize(7L));
+    }
+
+    @Test
+    void rejectsCorruptLength() {
+        byte[] corrupt = {0, 'L', 'Z', 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1, 2, 3};
+        byte[] truncated = {0, 'L', 'Z', 0};
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(corrupt));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+    }
+
+    @Test
+    void emptyAndNullValues() {
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    // 切换前 RedisConfig 使用的序列化
+    private static Jackson2JsonRedisSerializer<Object> legacySerializer() {
+        Jackson2JsonRedisSerializer<Object> legacy = new Jackson2JsonRedisSerializer<>(Object.class);
+        ObjectMapper om = new ObjectMapper();
+        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        legacy.setObjectMapper(om);
+        return legacy;
+    }
+
+    private static Paper largePaper() {
+        Paper paper = new Paper();
+        paper.setPid(42L);
+        paper.setTitle("Compact serialization of cached papers");
+        paper.setEssAbs(String.join(" ", Collections.nCopies(200, "abstract text")));
+        paper.setKeywords(new ArrayList<>(List.of("redis", "lz4", "smile")));
+        Map<String, Integer> auths = new LinkedHashMap<>();
+        auths.put("Alice", 1);
+        auths.put("Bob", 2);
+        paper.setAuths(auths);
+        paper.setRefs(new ArrayList<>(List.of(1L, 2L, 3L)));
+        paper.setPublishDate(new Date(1700000000000L));
+        paper.setFavTimes(3);
+        paper.setRefTimes(9);
+        paper.setStats(0);
+        return paper;
+    }
+}
@@ -0,0 +1,141 @@
+package com.buaa01.illumineer_backend.config;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Redis 的值序列化：小于阈值的值仍写成原来的 JSON（带类型信息），和已有数据逐字节相同，
+ * set / zset 成员、锁的持有者标识、HINCRBY 计数都不受影响；达到阈值的值改写成 Smile（二进制 JSON，重复的属性名和类名只写一次），
+ * 再用 LZ4 压缩，压缩后不变小时保留 Smile。
+ * 读取时按开头的字节区分：Smile 以 ":)\n" 开头，压缩值以 0x00 'L' 'Z' 开头，这两种都不是合法 JSON 的开头，其余按 JSON 读取，
+ * 旧数据无需迁移，过期后自然换成新格式。compact 为 false 时只写 JSON，仍能读取两种格式，滚动升级时先以此部署
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+    private static final byte[] LZ4_HEADER = {0, 'L', 'Z'};
+    /** 压缩值：LZ4_HEADER + 原长度（4 字节）+ 压缩数据 */
+    private static final int LZ4_PREFIX_LENGTH = LZ4_HEADER.length + 4;
+    /** LZ4 每个压缩字节最多还原出约 255 字节，据此检查原长度，避免损坏的数据导致分配过大的数组 */
+    private static final int LZ4_MAX_RATIO = 255;
+    /** Redis 字符串的最大长度 */
+    private static final int MAX_VALUE_LENGTH = 512 * 1024 * 1024;
+
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private final ObjectMapper jsonMapper = configure(new ObjectMapper());
+    private final ObjectMapper smileMapper = configure(new ObjectMapper(new SmileFactory()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)));
+
+    private final boolean compact;
+    private final int threshold;
+
+    /**
+     * @param compact 是否把大值写成 Smile + LZ4
+     * @param threshold 按 JSON 计算达到多少字节时写成 Smile + LZ4
+     */
+    public CompactRedisSerializer(boolean compact, int threshold) {
+        this.compact = compact;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] json = jsonMapper.writeValueAsBytes(value);
+            if (!compact || json.length < threshold) {
+                return json;
+            }
+            byte[] smile = smileMapper.writeValueAsBytes(value);
+            byte[] compressed = new byte[LZ4_PREFIX_LENGTH + COMPRESSOR.maxCompressedLength(smile.length)];
+            System.arraycopy(LZ4_HEADER, 0, compressed, 0, LZ4_HEADER.length);
+            writeInt(compressed, LZ4_HEADER.length, smile.length);
+            int length = COMPRESSOR.compress(smile, 0, smile.length, compressed, LZ4_PREFIX_LENGTH);
+            if (LZ4_PREFIX_LENGTH + length >= smile.length) {
+                return smile;
+            }
+            return Arrays.copyOf(compressed, LZ4_PREFIX_LENGTH + length);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write value: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (startsWith(bytes, LZ4_HEADER)) {
+                byte[] smile = new byte[readLength(bytes)];
+                DECOMPRESSOR.decompress(bytes, LZ4_PREFIX_LENGTH, smile, 0, smile.length);
+                return smileMapper.readValue(smile, Object.class);
+            }
+            if (startsWith(bytes, SMILE_HEADER)) {
+                return smileMapper.readValue(bytes, Object.class);
+            }
+            return jsonMapper.readValue(bytes, Object.class);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Could not read value: " + e.getMessage(), e);
+        }
+    }
+
+    // 和原来的 Jackson2JsonRedisSerializer 相同的配置：所有字段可见，非 final 类型写入类名
+    private static ObjectMapper configure(ObjectMapper om) {
+        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        return om;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    // 压缩值记录的原长度，超出压缩数据可能还原出的长度时视为损坏
+    private static int readLength(byte[] bytes) throws IOException {
+        if (bytes.length < LZ4_PREFIX_LENGTH) {
+            throw new IOException("Truncated LZ4 value");
+        }
+        int length = readInt(bytes, LZ4_HEADER.length);
+        if (length < 0 || length > MAX_VALUE_LENGTH
+                || length > (long) (bytes.length - LZ4_PREFIX_LENGTH) * LZ4_MAX_RATIO) {
+            throw new IOException("Invalid LZ4 length: " + length);
+        }
+        return length;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+                | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+    }
+}
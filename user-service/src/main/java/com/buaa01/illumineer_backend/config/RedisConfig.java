@@ -1,9 +1,5 @@
 package com.buaa01.illumineer_backend.config;
 
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
@@ -15,7 +11,6 @@ import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
@@ -41,6 +36,14 @@ public class RedisConfig extends CachingConfigurerSupport {
     @Value("${spring.redis.jedis.pool.max-wait}")
     private long maxWaitMillis;
 
+    /** 值的编码：compact 为大值写 Smile + LZ4，json 只写原来的 JSON；两种都能读取 */
+    @Value("${redis.codec.type:compact}")
+    private String codec;
+
+    /** 值按 JSON 计算达到多少字节时写成 Smile + LZ4 */
+    @Value("${redis.codec.compact-threshold:512}")
+    private int compactThreshold;
+
     /**
      * 创建并配置一个 Jedis 连接池
      * @return
@@ -88,7 +91,7 @@ public class RedisConfig extends CachingConfigurerSupport {
     }
 
     /**
-     * 编写自己的 redisTemplate，用于与 Redis 进行交互，配置了json格式存储，序列化与反序列化
+     * 编写自己的 redisTemplate，用于与 Redis 进行交互，值用 CompactRedisSerializer 序列化与反序列化
      * @param redisConnectionFactory
      * @return
      */
@@ -100,12 +103,8 @@ public class RedisConfig extends CachingConfigurerSupport {
         template.setConnectionFactory(redisConnectionFactory);
 
         // 序列化配置
-        // json的序列化
-        Jackson2JsonRedisSerializer jackson2JsonRedisSerializer = new Jackson2JsonRedisSerializer(Object.class);    // 用json序列化任意对象类
-        ObjectMapper om = new ObjectMapper();       // 对象类序列化过程中用 ObjectMapper 进行转义
-        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-        om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
-        jackson2JsonRedisSerializer.setObjectMapper(om);
+        // 小值仍为带类型信息的json，大值为 Smile + LZ4，旧的json数据照常读取
+        CompactRedisSerializer valueSerializer = new CompactRedisSerializer("compact".equals(codec), compactThreshold);
         // String的序列化
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
 
@@ -113,10 +112,10 @@ public class RedisConfig extends CachingConfigurerSupport {
         template.setKeySerializer(stringRedisSerializer);
         // hash的key也采用String的序列化方式
         template.setHashKeySerializer(stringRedisSerializer);
-        // value序列化方式采用jackson
-        template.setValueSerializer(jackson2JsonRedisSerializer);
-        // hash的value序列化方式采用jackson
-        template.setHashValueSerializer(jackson2JsonRedisSerializer);
+        // value序列化方式采用 CompactRedisSerializer
+        template.setValueSerializer(valueSerializer);
+        // hash的value序列化方式采用 CompactRedisSerializer
+        template.setHashValueSerializer(valueSerializer);
         template.afterPropertiesSet();
 
         return template;
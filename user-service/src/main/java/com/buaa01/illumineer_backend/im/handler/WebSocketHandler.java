@@ -65,11 +65,6 @@ public class WebSocketHandler extends SimpleChannelInboundHandler<TextWebSocketF
             // 用户离线操作
             if (IMServer.userChannel.get(uid).isEmpty()) {
                 IMServer.userChannel.remove(uid);
-                Set<String> channelKeys = redisTemplate.keys("message:" + uid + ":" + "*");
-                // 删除匹配的键
-                if (channelKeys != null && !channelKeys.isEmpty()) {
-                    redisTemplate.delete(channelKeys);
-                }
                 redisTool.deleteSetMember("login_member", uid);   // 从在线用户集合中移除
             }
         }
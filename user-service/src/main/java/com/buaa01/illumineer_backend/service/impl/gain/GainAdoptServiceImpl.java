@@ -1,5 +1,6 @@
 package com.buaa01.illumineer_backend.service.impl.gain;
 
+import com.alibaba.fastjson2.TypeReference;
 import com.buaa01.illumineer_backend.entity.CustomResponse;
 import com.buaa01.illumineer_backend.entity.Paper;
 import com.buaa01.illumineer_backend.entity.PaperAdo;
@@ -15,6 +16,7 @@ import org.springframework.stereotype.Service;
 
 import com.buaa01.illumineer_backend.service.client.PaperServiceClient;
 
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -24,6 +26,9 @@ import java.util.stream.Collectors;
 @Slf4j
 @Service
 public class GainAdoptServiceImpl implements GainAdoptService {
+    private static final Type ADOPTION_LIST_TYPE = new TypeReference<List<PaperAdo>>() {
+    }.getType();
+
     @Autowired
     private PaperServiceClient paperServiceClient;
 
@@ -44,25 +49,10 @@ public class GainAdoptServiceImpl implements GainAdoptService {
      **/
     @Override
     public List<PaperAdo> getAllGain(String name) {
-        String adoptionKey = "adoption :" + name;
-        if (!redisTool.isExist(adoptionKey)) {
-            List<PaperAdo> paperAdoptions = paperServiceClient.getPaperAdoByName(name);
-            //将带认领的文献列表存入redis中
-            //在对应的document-service中将paper实体类放入redis
-            for (PaperAdo paperAdo : paperAdoptions) {
-                redisTool.addSetMember(adoptionKey, paperAdo.getPid());
-            }
-            redisTool.setExpire(adoptionKey, 300);
-            return paperAdoptions;
-        } else {
-            List<Long> pids = redisTool.getAllList(adoptionKey, Long.class);
-            // 将 List<Long> 转换为逗号分隔的字符串
-            String pidss = pids.stream()
-                    .map(String::valueOf) // 将每个 Long 转换为 String
-                    .collect(Collectors.joining(",")); // 使用逗号连接
-            pidss = name + ":" + pids;
-            return paperServiceClient.getPaperAdoByList(pidss);
-        }
+        // 待认领列表缓存5分钟，认领后失效；同名用户并发请求时只调用一次 document-service
+        String adoptionKey = "adoption:list:" + name;
+        return redisTool.getOrLoad(adoptionKey, 300, ADOPTION_LIST_TYPE,
+                () -> paperServiceClient.getPaperAdoByName(name));
     }
 
     /**
@@ -89,9 +79,11 @@ public class GainAdoptServiceImpl implements GainAdoptService {
         if (!redisTool.isExist(needClaimKey)) {
             //初始化key
             List<PaperAdo> paperAdoptions = paperServiceClient.getPaperAdoByName(name);
+            List<Long> adoptionPids = new ArrayList<>(paperAdoptions.size());
             for (PaperAdo paperAdoption : paperAdoptions) {
-                redisTool.addSetMember(needClaimKey, paperAdoption.getPid());
+                adoptionPids.add(paperAdoption.getPid());
             }
+            redisTool.addSetMembers(needClaimKey, adoptionPids);
             return paperAdoptions;
         }
         // 已有
@@ -164,8 +164,10 @@ public class HistoryServiceImpl implements HistoryService {
     public CustomResponse deleteInHistory(Integer userId, List<Long> pids) {
         CustomResponse customResponse = new CustomResponse();
         String favKey = "uForHis:" + userId;
-        for (Long pid : pids) {
-            if (!redisTool.isExistInZSet(favKey, pid)) {
+        List<Double> scores = redisTool.getZScores(favKey, pids);
+        for (int i = 0; i < pids.size(); i++) {
+            Long pid = pids.get(i);
+            if (scores.get(i) == null) {
                 customResponse.setCode(500);
                 customResponse.setMessage("该历史记录不存在");
             } else {
@@ -395,7 +395,6 @@ public class UserAccountServiceImpl implements UserAccountService {
         redisTool.deleteValue("security:user:" + LoginUserId);
         //FIXME : 这里在线用户集合是set还是zset?
         redisTool.deleteSetMember("login_member", LoginUserId);   // 从在线用户集合中移除
-        redisTool.deleteByPrefix("whisper" + LoginUserId + ":"); // 清除全部在聊天窗口的状态
 
         // 断开全部该用户的channel 并从 userChannel 移除该用户
         Set<Channel> userChannels = IMServer.userChannel.get(LoginUserId);
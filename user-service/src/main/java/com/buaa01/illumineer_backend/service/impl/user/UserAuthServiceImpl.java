@@ -35,7 +35,8 @@ public class UserAuthServiceImpl implements UserAuthService {
         customResponse.setCode(200);
         customResponse.setMessage("论文认领成功");
         String fidKey = "property:" + user.getUid();
-        String adoptionKey = "adoption :" + user.getName();
+        // 待认领列表的缓存，认领后失效
+        String adoptionKey = "adoption:list:" + user.getName();
         //添加文章
         if(add==1) {
             for (Long pid : pids) {
@@ -44,7 +45,7 @@ public class UserAuthServiceImpl implements UserAuthService {
                 //收藏论文
                 else {
                     redisTool.addSetMember(fidKey, pid);
-                    redisTool.deleteSetMember(adoptionKey, pid);
+                    redisTool.deleteKey(adoptionKey);
 
                     //在文章的序列中添加作者
                     String authKey = "paperBelonged:" + pid;
@@ -284,9 +284,14 @@ public class UserFavoriteServiceImpl implements UserFavoriteService {
             Map<String, Object> favsInfos = new HashMap<>();
             List<Integer> retFids = new ArrayList<>();
 
+            List<String> fidKeys = new ArrayList<>(userFids.size());
             for (Integer fid : userFids) {
-                String fidKey = "fid:" + fid;
-                if (redisTool.isExistInZSet(fidKey, pid)) {
+                fidKeys.add("fid:" + fid);
+            }
+            List<Double> scores = redisTool.getZScoresInKeys(fidKeys, pid);
+            for (int i = 0; i < userFids.size(); i++) {
+                Integer fid = userFids.get(i);
+                if (scores.get(i) != null) {
                     retFids.add(fid);
                 }
                 favsInfos.put(fid.toString(), favoriteMapper.selectById(fid).getTitle());
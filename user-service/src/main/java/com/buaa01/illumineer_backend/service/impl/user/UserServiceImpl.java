@@ -43,17 +43,9 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public User getUserByUId(Integer uid) {
-        // 从redis中获取最新数据
-        User user = redisTool.getObjectByClass("user" + uid, User.class);
-        // 如果redis中没有user数据，就从mysql中获取并更新到redis
-        if (user == null) {
-            user = userMapper.selectById(uid);
-            User finalUser = user;
-            CompletableFuture.runAsync(() -> {
-                redisTool.setExObjectValue("user:" + finalUser.getUid(), finalUser); // 默认存活1小时
-            }, taskExecutor);
-        }
-        return user;
+        // 从redis中获取，没有时从mysql加载并写回redis（默认存活1小时），并发未命中只查一次库
+        return redisTool.getOrLoad("user:" + uid, RedisTool.REDIS_DEFAULT_EXPIRE_TIME, User.class,
+                () -> userMapper.selectById(uid));
     }
 
     /**
@@ -166,7 +158,7 @@ public class UserServiceImpl implements UserService {
         Integer loginUserId = currentUser.getUserId();
         User user = redisTool.getObjectByClass("user:" + loginUserId, User.class);
         if (user != null) {
-            redisTool.deleteKey("user" + loginUserId);
+            redisTool.deleteKey("user:" + loginUserId);
         }
         User user1 = new User();
         user1.setUid(loginUserId);
@@ -186,7 +178,9 @@ public class UserServiceImpl implements UserService {
         User user = new User();
         user.setUid(uid);
         user.setStats(1);
-        return userMapper.updateById(user);
+        int updated = userMapper.updateById(user);
+        redisTool.deleteKey("user:" + uid);
+        return updated;
     }
 
     /**
@@ -200,7 +194,9 @@ public class UserServiceImpl implements UserService {
         User user = new User();
         user.setUid(uid);
         user.setStats(0);
-        return userMapper.updateById(user);
+        int updated = userMapper.updateById(user);
+        redisTool.deleteKey("user:" + uid);
+        return updated;
     }
 
     @Override
@@ -13,12 +13,23 @@ import org.springframework.context.annotation.AnnotationConfigApplicationContext
 import org.springframework.data.redis.connection.DataType;
 import org.springframework.data.redis.core.DefaultTypedTuple;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
+import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Component
@@ -35,6 +46,38 @@ public class RedisTool {
     //设置默认的时间单位：秒，也就是说所有的Redis相关时间操作单位都是“秒”
     public static final TimeUnit REDIS_DEFAULT_EXPIRE_TIME_UNIT = TimeUnit.SECONDS;
 
+    // 批量操作每个 pipeline 包含的命令数，避免一次缓冲过多回复
+    private static final int PIPELINE_BATCH = 1000;
+
+    // getOrLoad 记录加载耗时（毫秒）的键后缀，用于提前刷新
+    private static final String LOAD_DELTA_SUFFIX = ":delta";
+    // getOrLoad 跨节点加载锁的键后缀
+    private static final String LOAD_LOCK_SUFFIX = ":loading";
+    // 加载锁的存活时间（秒），也是其他节点等待加载结果的最长时间
+    private static final long LOAD_LOCK_SECONDS = 3;
+    // 等待其他节点加载时的轮询间隔（毫秒）
+    private static final long LOAD_WAIT_MILLIS = 50;
+    // 提前刷新的激进程度，越大越早刷新
+    private static final double EARLY_REFRESH_BETA = 1.0;
+    // getOrLoad 加载结果为空时缓存的值：JSON 的 null，读取时解析为 null
+    private static final String MISSING_VALUE = "null";
+    // 空结果的存活时间（秒），不超过正常的存活时间
+    private static final long MISSING_SECONDS = 30;
+
+    // 比较并删除，保证判断和删除是原子的
+    private static final RedisScript<Long> DELETE_IF_EQUALS = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    // 一次取回值、剩余存活时间（毫秒）和加载耗时；两个键在同一个槽，集群模式下也能在一个脚本中访问
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> GET_WITH_TTL = new DefaultRedisScript<>(
+            "return {redis.call('get', KEYS[1]) or false, redis.call('pttl', KEYS[1]), redis.call('get', KEYS[2]) or false}",
+            List.class);
+
+    // 本进程内正在进行的加载，同一个键的并发未命中共用一次加载
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
     //---------------------以下是对于键key的相关操作--------------------
 
     /**
@@ -97,28 +140,6 @@ public class RedisTool {
         redisTemplate.delete(keys);
     }
 
-    /**
-     * 获取指定前缀的所有的key
-     *
-     * @param keyPrefix 前缀
-     * @return 所有前缀符合的key的集合
-     */
-    public Set<String> getKeysByPrefix(String keyPrefix) {
-        return redisTemplate.keys(keyPrefix + "*");
-    }
-
-    /**
-     * 删除指定前缀的所有key的缓存
-     *
-     * @param keyPrefix 前缀
-     */
-    public void deleteByPrefix(String keyPrefix) {
-        Set<String> keys = redisTemplate.keys(keyPrefix + "*");
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
-    }
-
     /**
      * 查询key是否存在于redis
      *
@@ -403,6 +424,28 @@ public class RedisTool {
         return redisTemplate.opsForZSet().score(key, value);
     }
 
+    /**
+     * 批量查询元素的分数，通过 pipeline 一次往返完成
+     *
+     * @param key 键
+     * @param values 键key对应的集合中的元素
+     * @return 与values一一对应的分数，元素不存在时为null
+     */
+    public List<Double> getZScores(String key, List<?> values) {
+        return toDoubles(pipelined(values, (operations, value) -> operations.opsForZSet().score(key, value)));
+    }
+
+    /**
+     * 批量查询同一个元素在多个集合中的分数，通过 pipeline 一次往返完成
+     *
+     * @param keys 键
+     * @param value 元素
+     * @return 与keys一一对应的分数，集合中没有该元素时为null
+     */
+    public List<Double> getZScoresInKeys(List<String> keys, Object value) {
+        return toDoubles(pipelined(keys, (operations, key) -> operations.opsForZSet().score(key, value)));
+    }
+
     /**
      * 对某个元素增加分数
      *
@@ -499,6 +542,18 @@ public class RedisTool {
         redisTemplate.opsForSet().add(key, value);
     }
 
+    /**
+     * 向SET中批量添加无过期时间的对象，一条 SADD 完成
+     *
+     * @param key 键
+     * @param values 对象集合
+     */
+    public void addSetMembers(String key, Collection<?> values) {
+        if (!values.isEmpty()) {
+            redisTemplate.opsForSet().add(key, values.toArray());
+        }
+    }
+
     /**
      * 删除SET中的数据
      *
@@ -591,6 +646,18 @@ public class RedisTool {
         setExValue(key, jsonString, time, timeUnit);
     }
 
+    /**
+     * 使用指定有效期批量存储实体类，每个实体类转换成JSON后通过 pipeline 写入（SET EX），不再逐条往返
+     *
+     * @param values 键 → 实体类
+     * @param time 指定的有效期时间
+     * @param timeUnit 单位
+     */
+    public void setExObjectValues(Map<String, ?> values, long time, TimeUnit timeUnit) {
+        pipelined(new ArrayList<>(values.entrySet()), (operations, entry) ->
+                operations.opsForValue().set(entry.getKey(), JSON.toJSONString(entry.getValue()), time, timeUnit));
+    }
+
     /**
      * 使用 默认有效期 和 默认时间单位（秒） 存储简单数据类型
      *
@@ -655,6 +722,24 @@ public class RedisTool {
         return null;
     }
 
+    /**
+     * 根据传入的类型批量获取实体类，一条 MGET 完成
+     *
+     * @param keys 键
+     * @param clazz 实体类的类型
+     * @return 与keys一一对应的实体类，键不存在时为null
+     */
+    public <T> List<T> multiGetObjects(List<String> keys, Class<T> clazz) {
+        List<T> objects = new ArrayList<>(keys.size());
+        List<Object> values = keys.isEmpty() ? null : redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = values == null ? null : values.get(i);
+            objects.add(value == null || StringUtils.isBlank(value.toString())
+                    ? null : JSONObject.parseObject(value.toString(), clazz));
+        }
+        return objects;
+    }
+
     /**
      * 获取list中全部数据
      *
@@ -680,4 +765,168 @@ public class RedisTool {
         redisTemplate.opsForValue().getOperations().delete(key);
     }
 
+    /**
+     * 键不存在时才写入，并设置存活时间，用作分布式锁
+     *
+     * @param key   键
+     * @param value 值，一般为持有者标识
+     * @param time  存活时间（秒）
+     * @return 是否写入成功
+     */
+    public boolean setIfAbsent(String key, Object value, long time) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, time, REDIS_DEFAULT_EXPIRE_TIME_UNIT));
+    }
+
+    /**
+     * 值与给定值相同时才删除，用于释放自己持有的锁，不会误删已经过期后被别人重新获取的锁
+     *
+     * @param key   键
+     * @param value 持有者标识
+     * @return 是否删除
+     */
+    public boolean deleteIfEquals(String key, Object value) {
+        Long deleted = redisTemplate.execute(DELETE_IF_EQUALS, Collections.singletonList(key), value);
+        return deleted != null && deleted > 0;
+    }
+
+    //--------------------字符串存储String相关操作结束--------------------
+
+    //--------------------读穿缓存相关操作开始--------------------
+
+    /**
+     * 读穿缓存：命中时直接返回，未命中时调用 loader 加载并以 JSON 写入缓存（与 setExObjectValue 格式相同）。
+     * 同一进程内同一个键的并发未命中只加载一次；多个节点之间用短时的 Redis 锁，只有一个节点加载，其余节点等它写入。
+     * 快要过期时按 XFetch 算法以一定概率提前刷新：加载越慢、剩余时间越短，越可能提前刷新，
+     * 刷新期间其他请求继续使用旧值，过期时不会有大量请求同时回源。
+     * loader 返回 null 时也短时间缓存，不存在的数据不会每次都回源
+     *
+     * @param key    键
+     * @param ttl    存活时间（秒）
+     * @param type   值的类型，如 User.class，泛型集合可用 fastjson 的 TypeReference.getType()
+     * @param loader 从数据库或其他服务加载，返回 null 时缓存 MISSING_SECONDS 秒
+     * @return 缓存或加载的值
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String key, long ttl, Type type, Supplier<T> loader) {
+        List<Object> cached = redisTemplate.execute(GET_WITH_TTL, Arrays.asList(key, deltaKey(key)));
+        Object value = cached == null || cached.isEmpty() ? null : cached.get(0);
+        if (value == null) {
+            return (T) singleFlight(key, () -> loadWithLock(key, ttl, type, loader, true));
+        }
+        T result = JSON.parseObject(value.toString(), type);
+        long remaining = ((Number) cached.get(1)).longValue();
+        long delta = cached.get(2) == null ? 0 : Long.parseLong(cached.get(2).toString());
+        // XFetch：-delta * beta * ln(rand) 服从指数分布，超过剩余时间时提前刷新；没有过期时间的键不刷新
+        if (remaining < 0 || -delta * EARLY_REFRESH_BETA * Math.log(ThreadLocalRandom.current().nextDouble()) < remaining) {
+            return result;
+        }
+        // 提前刷新只由抢到锁的请求完成，没抢到的继续使用旧值
+        T fresh = (T) singleFlight(key + LOAD_LOCK_SUFFIX, () -> loadWithLock(key, ttl, type, loader, false));
+        return fresh != null ? fresh : result;
+    }
+
+    // 同一个键同时只有一个线程执行 load，其余线程等待并共用结果
+    private Object singleFlight(String flightKey, Supplier<Object> load) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(flightKey, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            Object value = load.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(flightKey, mine);
+        }
+    }
+
+    // 抢到跨节点的加载锁时加载并写入；没抢到时 wait 为 true 则等待其他节点的结果，否则返回 null
+    private <T> Object loadWithLock(String key, long ttl, Type type, Supplier<T> loader, boolean wait) {
+        String lockKey = key + LOAD_LOCK_SUFFIX;
+        String token = UUID.randomUUID().toString();
+        if (setIfAbsent(lockKey, token, LOAD_LOCK_SECONDS)) {
+            try {
+                return loadAndStore(key, ttl, loader);
+            } finally {
+                deleteIfEquals(lockKey, token);
+            }
+        }
+        if (!wait) {
+            return null;
+        }
+        long deadline = System.currentTimeMillis() + LOAD_LOCK_SECONDS * 1000;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(LOAD_WAIT_MILLIS);
+                String json = getObjectString(key);
+                if (json != null) {
+                    return JSON.parseObject(json, type);
+                }
+                if (!isExist(lockKey)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 其他节点加载失败或超时，自己加载
+        return loadAndStore(key, ttl, loader);
+    }
+
+    private <T> T loadAndStore(String key, long ttl, Supplier<T> loader) {
+        long start = System.currentTimeMillis();
+        T value = loader.get();
+        if (value != null) {
+            long delta = System.currentTimeMillis() - start;
+            setExObjectValue(key, value, ttl, REDIS_DEFAULT_EXPIRE_TIME_UNIT);
+            setExValue(deltaKey(key), delta, ttl);
+        } else {
+            setExValue(key, MISSING_VALUE, Math.min(ttl, MISSING_SECONDS));
+        }
+        return value;
+    }
+
+    // 加载耗时的键，和 key 落在同一个槽：key 已有 hash tag 时直接加后缀，否则把整个 key 作为 hash tag
+    private static String deltaKey(String key) {
+        int open = key.indexOf('{');
+        int close = open < 0 ? -1 : key.indexOf('}', open + 1);
+        return (close > open + 1 ? key : "{" + key + "}") + LOAD_DELTA_SUFFIX;
+    }
+
+    //--------------------读穿缓存相关操作结束--------------------
+
+    // 按 PIPELINE_BATCH 分批，每批在一个 pipeline 中对每个元素执行一条命令，返回与items一一对应的结果
+    private <T> List<Object> pipelined(List<T> items, BiConsumer<RedisOperations<String, Object>, T> command) {
+        List<Object> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i += PIPELINE_BATCH) {
+            List<T> batch = items.subList(i, Math.min(i + PIPELINE_BATCH, items.size()));
+            results.addAll(redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    for (T item : batch) {
+                        command.accept((RedisOperations<String, Object>) operations, item);
+                    }
+                    return null;
+                }
+            }));
+        }
+        return results;
+    }
+
+    private static List<Double> toDoubles(List<Object> results) {
+        List<Double> scores = new ArrayList<>(results.size());
+        for (Object result : results) {
+            scores.add(result == null ? null : ((Number) result).doubleValue());
+        }
+        return scores;
+    }
 }